@@ -0,0 +1,49 @@
+package com.mcsirius.cloud.redis.benchmark;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 基准测试使用的缓存value，字段类型与常见的业务对象相近
+ */
+@Data
+public class BenchmarkPayload {
+
+    private Long id;
+
+    private String name;
+
+    private String description;
+
+    private BigDecimal price;
+
+    private Date updateTime;
+
+    private List<String> tags;
+
+    public static BenchmarkPayload of(long id) {
+        BenchmarkPayload payload = new BenchmarkPayload();
+        payload.setId(id);
+        payload.setName("item-" + id);
+        payload.setDescription("benchmark payload " + id + " used to measure key generation and serialization");
+        payload.setPrice(BigDecimal.valueOf(id * 100 + 99, 2));
+        payload.setUpdateTime(new Date(1704110400000L + id * 1000));
+        payload.setTags(List.of("tag-a", "tag-b", "tag-" + id % 10));
+        return payload;
+    }
+
+    /**
+     * 由 size 个元素组成的列表，用于测量大value
+     */
+    public static List<BenchmarkPayload> listOf(int size) {
+        List<BenchmarkPayload> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(of(i));
+        }
+        return list;
+    }
+}
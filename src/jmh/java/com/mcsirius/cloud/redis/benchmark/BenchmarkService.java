@@ -0,0 +1,24 @@
+package com.mcsirius.cloud.redis.benchmark;
+
+import com.mcsirius.cloud.redis.annotation.LockedCacheable;
+
+/**
+ * 切面基准测试调用的被缓存方法
+ */
+public class BenchmarkService {
+
+    @LockedCacheable(cacheName = "benchmark#PT10M", key = "#id", sync = true)
+    public BenchmarkPayload find(Long id) {
+        return BenchmarkPayload.of(id);
+    }
+
+    @LockedCacheable(cacheName = "benchmark:spel#PT10M", key = "'item:' + #id + ':' + #version", sync = true)
+    public BenchmarkPayload findVersion(Long id, Integer version) {
+        return BenchmarkPayload.of(id);
+    }
+
+    @LockedCacheable(cacheName = "benchmark:local#PT10M", key = "#id", sync = true, local = true)
+    public BenchmarkPayload findLocal(Long id) {
+        return BenchmarkPayload.of(id);
+    }
+}
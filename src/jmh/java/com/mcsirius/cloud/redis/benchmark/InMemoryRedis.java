@@ -0,0 +1,138 @@
+package com.mcsirius.cloud.redis.benchmark;
+
+import org.redisson.api.RLock;
+import org.redisson.api.RReadWriteLock;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisKeyCommands;
+import org.springframework.data.redis.connection.RedisStringCommands;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+/**
+ * 基准测试使用的进程内redis替身，只用于测量切面自身的开销，不模拟网络往返
+ * 字符串命令读写一个 ConcurrentHashMap（忽略TTL），redisson 的锁总是立即获取成功，频道不投递消息
+ */
+public class InMemoryRedis {
+
+    private final Map<ByteBuffer, byte[]> store = new ConcurrentHashMap<>();
+
+    private final RedisConnectionFactory connectionFactory;
+
+    private final RedissonClient redissonClient;
+
+    public InMemoryRedis() {
+        RedisStringCommands stringCommands = stub(RedisStringCommands.class, (method, args) -> switch (method.getName()) {
+            case "get", "getEx" -> store.get(ByteBuffer.wrap((byte[]) args[0]));
+            case "set" -> {
+                store.put(ByteBuffer.wrap((byte[]) args[0]), (byte[]) args[1]);
+                yield Boolean.TRUE;
+            }
+            case "mGet" -> {
+                List<byte[]> values = new ArrayList<>();
+                for (byte[] key : (byte[][]) args[0]) {
+                    values.add(store.get(ByteBuffer.wrap(key)));
+                }
+                yield values;
+            }
+            default -> null;
+        });
+        RedisKeyCommands keyCommands = stub(RedisKeyCommands.class, (method, args) -> switch (method.getName()) {
+            case "del", "unlink" -> {
+                long count = 0;
+                for (byte[] key : (byte[][]) args[0]) {
+                    count += store.remove(ByteBuffer.wrap(key)) != null ? 1 : 0;
+                }
+                yield count;
+            }
+            default -> null;
+        });
+        RedisConnection connection = stub(RedisConnection.class, (method, args) -> switch (method.getName()) {
+            case "stringCommands" -> stringCommands;
+            case "keyCommands" -> keyCommands;
+            default -> null;
+        });
+        this.connectionFactory = stub(RedisConnectionFactory.class, (method, args) -> switch (method.getName()) {
+            case "getConnection" -> connection;
+            case "getConvertPipelineAndTxResults" -> Boolean.TRUE;
+            default -> null;
+        });
+        RLock lock = stub(RLock.class, (method, args) -> switch (method.getName()) {
+            case "tryLock", "isHeldByCurrentThread", "isLocked" -> Boolean.TRUE;
+            default -> null;
+        });
+        RReadWriteLock readWriteLock = stub(RReadWriteLock.class, (method, args) -> switch (method.getName()) {
+            case "readLock", "writeLock" -> lock;
+            default -> null;
+        });
+        RTopic topic = stub(RTopic.class, (method, args) -> null);
+        this.redissonClient = stub(RedissonClient.class, (method, args) -> switch (method.getName()) {
+            case "getLock" -> lock;
+            case "getReadWriteLock" -> readWriteLock;
+            case "getTopic" -> topic;
+            case "getId" -> "benchmark";
+            default -> null;
+        });
+    }
+
+    public RedisConnectionFactory getConnectionFactory() {
+        return connectionFactory;
+    }
+
+    public RedissonClient getRedissonClient() {
+        return redissonClient;
+    }
+
+    /**
+     * 删除一个key，未命中的基准测试在每次调用后使用
+     */
+    public void delete(String key) {
+        store.remove(ByteBuffer.wrap(key.getBytes()));
+    }
+
+    /**
+     * 按方法名应答的接口替身，未处理的方法返回null，基本类型返回默认值
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type, BiFunction<Method, Object[], Object> answer) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    default -> type.getSimpleName() + "Stub";
+                };
+            }
+            Object result = answer.apply(method, args);
+            if (result == null && method.getReturnType().isPrimitive()) {
+                return defaultValue(method.getReturnType());
+            }
+            return result;
+        });
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return Boolean.FALSE;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == double.class) {
+            return 0d;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,59 @@
+package com.mcsirius.cloud.redis.benchmark;
+
+import com.mcsirius.cloud.redis.config.LockedCacheProperties;
+import com.mcsirius.cloud.redis.config.RedisConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cache.interceptor.KeyGenerator;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * RedisConfig.keyGenerator 生成 @Cacheable 默认key的开销
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(java.util.concurrent.TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeyGeneratorBenchmark {
+
+    private KeyGenerator keyGenerator;
+
+    private Object target;
+
+    private Method method;
+
+    private Object[] simpleParams;
+
+    private Object[] complexParams;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        keyGenerator = new RedisConfig().keyGenerator(new LockedCacheProperties());
+        target = new BenchmarkService();
+        method = BenchmarkService.class.getMethod("findVersion", Long.class, Integer.class);
+        simpleParams = new Object[]{42L, 7};
+        complexParams = new Object[]{BenchmarkPayload.of(42), List.of(1L, 2L, 3L, 4L, 5L)};
+    }
+
+    @Benchmark
+    public Object simpleParams() {
+        return keyGenerator.generate(target, method, simpleParams);
+    }
+
+    @Benchmark
+    public Object complexParams() {
+        return keyGenerator.generate(target, method, complexParams);
+    }
+}
@@ -0,0 +1,108 @@
+package com.mcsirius.cloud.redis.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.redisson.api.RedissonClient;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.EnableAspectJAutoProxy;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LockedCacheable 切面的命中和未命中路径，redis 和 redisson 使用进程内替身
+ * 结果只包含切面自身的开销（锁、key计算、编解码、本地缓存），不包含网络往返
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LockedCacheableAspectBenchmark {
+
+    private static final InMemoryRedis REDIS = new InMemoryRedis();
+
+    private AnnotationConfigApplicationContext context;
+
+    private BenchmarkService service;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new AnnotationConfigApplicationContext(BenchmarkConfig.class);
+        service = context.getBean(BenchmarkService.class);
+        // 预先写入命中路径使用的缓存
+        service.find(1L);
+        service.findVersion(1L, 1);
+        service.findLocal(1L);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object hit() {
+        return service.find(1L);
+    }
+
+    @Benchmark
+    public Object hitSpel() {
+        return service.findVersion(1L, 1);
+    }
+
+    @Benchmark
+    public Object hitLocal() {
+        return service.findLocal(1L);
+    }
+
+    @Benchmark
+    public Object miss() {
+        Object value = service.find(2L);
+        REDIS.delete("benchmark:2");
+        return value;
+    }
+
+    @Configuration
+    @EnableAspectJAutoProxy
+    @ComponentScan("com.mcsirius.cloud.redis.aspect")
+    @ComponentScan("com.mcsirius.cloud.redis.support")
+    @ComponentScan("com.mcsirius.cloud.redis.config")
+    static class BenchmarkConfig {
+
+        @Bean
+        public RedisConnectionFactory redisConnectionFactory() {
+            return REDIS.getConnectionFactory();
+        }
+
+        @Bean
+        public RedissonClient redissonClient() {
+            return REDIS.getRedissonClient();
+        }
+
+        @Bean
+        public StringRedisTemplate stringRedisTemplate(RedisConnectionFactory redisConnectionFactory) {
+            return new StringRedisTemplate(redisConnectionFactory);
+        }
+
+        @Bean
+        public BenchmarkService benchmarkService() {
+            return new BenchmarkService();
+        }
+    }
+}
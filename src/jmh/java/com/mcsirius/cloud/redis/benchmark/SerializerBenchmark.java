@@ -0,0 +1,70 @@
+package com.mcsirius.cloud.redis.benchmark;
+
+import com.mcsirius.cloud.redis.codec.CacheCodecRegistry;
+import com.mcsirius.cloud.redis.codec.JacksonValueCodec;
+import com.mcsirius.cloud.redis.codec.KryoValueCodec;
+import com.mcsirius.cloud.redis.config.RedisConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * value序列化的开销：jackson2JsonRedisSerializer 以及 CacheCodecRegistry 中的各编码格式
+ * size 为列表中的元素个数，1 表示单个对象
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializerBenchmark {
+
+    @Param({"jackson2Json", "json", "smile", "cbor", "kryo"})
+    private String serializer;
+
+    @Param({"1", "100"})
+    private int size;
+
+    private RedisSerializer<Object> redisSerializer;
+
+    private Object value;
+
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() {
+        if ("jackson2Json".equals(serializer)) {
+            redisSerializer = new RedisConfig().jackson2JsonRedisSerializer();
+        } else {
+            CacheCodecRegistry registry = new CacheCodecRegistry(List.of(JacksonValueCodec.json(),
+                    JacksonValueCodec.smile(), JacksonValueCodec.cbor(), new KryoValueCodec()), serializer, Map.of(), 0);
+            redisSerializer = registry.defaultSerializer();
+        }
+        value = size == 1 ? BenchmarkPayload.of(1) : BenchmarkPayload.listOf(size);
+        bytes = redisSerializer.serialize(value);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return redisSerializer.serialize(value);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return redisSerializer.deserialize(bytes);
+    }
+}
@@ -0,0 +1,84 @@
+package com.mcsirius.cloud.redis.benchmark;
+
+import com.mcsirius.cloud.redis.utils.SpelUtil;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.expression.Expression;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spel key表达式的求值开销
+ * generateKeyBySpEL 每次都从切点取方法和参数名，generateKey 使用预先解析好的表达式和参数名（切面实际使用的路径）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpelKeyBenchmark {
+
+    private static final String SIMPLE = "#id";
+
+    private static final String COMPOSITE = "'item:' + #id + ':' + #version";
+
+    private ProceedingJoinPoint joinPoint;
+
+    private Object[] args;
+
+    private String[] parameterNames;
+
+    private Expression simpleExpression;
+
+    private Expression compositeExpression;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        Method method = BenchmarkService.class.getMethod("findVersion", Long.class, Integer.class);
+        args = new Object[]{42L, 7};
+        parameterNames = SpelUtil.getParameterNames(method);
+        simpleExpression = SpelUtil.parseExpression(SIMPLE);
+        compositeExpression = SpelUtil.parseExpression(COMPOSITE);
+        MethodSignature signature = (MethodSignature) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{MethodSignature.class}, (proxy, m, a) -> "getMethod".equals(m.getName()) ? method : null);
+        joinPoint = (ProceedingJoinPoint) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{ProceedingJoinPoint.class}, (proxy, m, a) -> switch (m.getName()) {
+                    case "getSignature" -> signature;
+                    case "getArgs" -> args;
+                    default -> null;
+                });
+    }
+
+    @Benchmark
+    public String generateKeyBySpelSimple() {
+        return SpelUtil.generateKeyBySpEL(SIMPLE, joinPoint);
+    }
+
+    @Benchmark
+    public String generateKeyBySpelComposite() {
+        return SpelUtil.generateKeyBySpEL(COMPOSITE, joinPoint);
+    }
+
+    @Benchmark
+    public String precompiledSimple() {
+        return SpelUtil.generateKey(simpleExpression, parameterNames, args);
+    }
+
+    @Benchmark
+    public String precompiledComposite() {
+        return SpelUtil.generateKey(compositeExpression, parameterNames, args);
+    }
+}
@@ -0,0 +1,60 @@
+package org.springframework.data.redis.cache;
+
+import com.mcsirius.cloud.redis.benchmark.InMemoryRedis;
+import com.mcsirius.cloud.redis.config.LockedCacheProperties;
+import com.mcsirius.cloud.redis.support.TtlPolicyResolver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.autoconfigure.cache.CacheProperties;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TTCacheManager.createRedisCache 解析 cacheName#TTL 并创建缓存的开销
+ * 与 benchmark 包分开放置，以便调用 protected 的 createRedisCache
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TTCacheManagerBenchmark {
+
+    private TTCacheManager cacheManager;
+
+    private TTCacheManager cacheManagerWithTtlPolicies;
+
+    @Setup
+    public void setUp() {
+        InMemoryRedis redis = new InMemoryRedis();
+        cacheManager = TTCacheManager.builder(redis.getConnectionFactory()).build();
+        cacheManagerWithTtlPolicies = TTCacheManager.builder(redis.getConnectionFactory())
+                .ttlPolicies(new TtlPolicyResolver(new LockedCacheProperties(), new CacheProperties()))
+                .build();
+    }
+
+    @Benchmark
+    public RedisCache plainName() {
+        return cacheManager.createRedisCache("items", cacheManager.getDefaultCacheConfiguration());
+    }
+
+    @Benchmark
+    public RedisCache nameWithTtl() {
+        return cacheManager.createRedisCache("items#PT5M", cacheManager.getDefaultCacheConfiguration());
+    }
+
+    @Benchmark
+    public RedisCache nameWithTtlPolicy() {
+        return cacheManagerWithTtlPolicies.createRedisCache("items#PT5M",
+                cacheManagerWithTtlPolicies.getDefaultCacheConfiguration());
+    }
+}
@@ -17,4 +17,7 @@ public @interface ClearAndReloadCache {
 
     //spel表达式的操作说明
     String key() default "";
+
+    //延迟双删的间隔，单位毫秒
+    long delay() default 1000;
 }
@@ -19,4 +19,31 @@ public @interface LockedCacheable {
     String key() default "";
 
     boolean sync() default false;
+
+    //是否启用本地一级缓存，热点数据直接从本地内存读取
+    boolean local() default false;
+
+    //是否启用布隆过滤器，判定不存在的key直接返回null；必须注册同名的 BloomFilterWarmUp 预热全量key，预热完成前不过滤
+    boolean bloomFilter() default false;
+
+    //布隆过滤器预计元素数量，<=0 时使用配置文件中的值
+    long expectedInsertions() default 0;
+
+    //布隆过滤器误判率，<=0 时使用配置文件中的值
+    double falseProbability() default 0;
+
+    //是否在过期前提前刷新，需配置TTL，不能与滑动过期同时使用；按 XFetch 算法由少数请求触发后台刷新，其余请求继续读取当前值
+    boolean refreshAhead() default false;
+
+    //提前刷新的系数，越大越早刷新
+    double refreshBeta() default 1.0;
+
+    //加载失败或超时时返回旧值，必须同时开启sync，否则启动时报错；成功加载时另存一份存活时间更长的副本
+    boolean staleWhileError() default false;
+
+    //批量模式：key需直接引用一个集合参数（如 #ids），每个元素单独缓存，一次MGET读取，只用缺失的元素调用方法；不能与 local、bloomFilter、refreshAhead、staleWhileError 同时使用
+    boolean batch() default false;
+
+    //批量模式下方法返回集合时，从每个结果中取出对应元素的Spel表达式（如 id）；返回Map时使用Map的key
+    String resultKey() default "";
 }
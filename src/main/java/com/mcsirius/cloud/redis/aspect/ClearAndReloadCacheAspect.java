@@ -1,29 +1,49 @@
 package com.mcsirius.cloud.redis.aspect;
 
 
-import cn.hutool.core.util.StrUtil;
 import com.mcsirius.cloud.redis.annotation.ClearAndReloadCache;
-import com.mcsirius.cloud.redis.utils.SpelUtil;
+import com.mcsirius.cloud.redis.support.CacheEvents;
+import com.mcsirius.cloud.redis.support.CacheInvocationEvent;
+import com.mcsirius.cloud.redis.support.CacheMetrics;
+import com.mcsirius.cloud.redis.support.CacheOperationMetadata;
+import com.mcsirius.cloud.redis.support.CacheOperationMetadataRegistry;
+import com.mcsirius.cloud.redis.support.CacheScripts;
+import com.mcsirius.cloud.redis.support.DelayedEvictScheduler;
+import com.mcsirius.cloud.redis.support.KeyEvictor;
+import com.mcsirius.cloud.redis.support.NearCache;
+import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
-import org.aspectj.lang.Signature;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Pointcut;
-import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Component;
 
-import java.lang.reflect.Method;
-import java.util.Objects;
-import java.util.Set;
-
 @Aspect
 @Component
+@Slf4j
 public class ClearAndReloadCacheAspect {
 
     @Autowired
-    private StringRedisTemplate stringRedisTemplate;
+    private KeyEvictor keyEvictor;
+
+    @Autowired
+    private NearCache nearCache;
+
+    @Autowired
+    private CacheOperationMetadataRegistry metadataRegistry;
+
+    @Autowired
+    private DelayedEvictScheduler delayedEvictScheduler;
+
+    @Autowired
+    private CacheMetrics cacheMetrics;
+
+    @Autowired
+    private CacheEvents cacheEvents;
+
+    @Autowired
+    private CacheScripts cacheScripts;
 
     /**
      * 切入点
@@ -42,54 +62,48 @@ public class ClearAndReloadCacheAspect {
      */
     @Around("pointCut()")
     public Object aroundAdvice(ProceedingJoinPoint proceedingJoinPoint){
-        System.out.println("----------- 环绕通知 -----------");
-
-        Signature signature1 = proceedingJoinPoint.getSignature();
-        MethodSignature methodSignature = (MethodSignature)signature1;
-        Method targetMethod = methodSignature.getMethod();//方法对象
-        ClearAndReloadCache annotation = targetMethod.getAnnotation(ClearAndReloadCache.class);//反射得到自定义注解的方法对象
-        String name = "";
-        String key;
-        //获取自定义注解的值，是否使用el表达式
-        if (annotation != null) {
-            if (StrUtil.isNotBlank(annotation.cacheName())) {
-                name = annotation.cacheName();
-            }
-            //注解上的描述
-            if (StrUtil.isNotBlank(annotation.key())) {
-                key = SpelUtil.generateKeyBySpEL(annotation.key(), proceedingJoinPoint);
-                if (!Objects.equals(name, "")) {
-                    name = name + ":";
-                }
-                name = name + key;
-            }
-        }
 
-        Set<String> keys = stringRedisTemplate.keys(name);//確切刪除
-        stringRedisTemplate.delete(keys);//模糊删除redis的key值
-        System.out.println("环绕通知的目标方法名：" + proceedingJoinPoint.getSignature().getName()+",keys="+name);
+        //预先解析好的注解元数据，包括缓存名以及编译后的Spel表达式
+        CacheOperationMetadata<ClearAndReloadCache> metadata = metadataRegistry.get(proceedingJoinPoint, ClearAndReloadCache.class);
+        ClearAndReloadCache annotation = metadata.getAnnotation();
+        String name = metadata.resolveName(metadata.generateKey(proceedingJoinPoint.getArgs()));
+        CacheInvocationEvent event = cacheEvents.begin();
 
-        //执行加入双删注解的改动数据库的业务 即controller中的方法业务
+        // 版本模式下第一次删除前把版本号变为奇数，方法执行完成后变为偶数，期间的读取等待，期间的加载放弃写回
+        boolean versioned = cacheScripts.isVersioned() && !KeyEvictor.isPattern(name);
+        if (versioned) {
+            cacheScripts.beginWrite(name);
+        }
         Object proceed = null;
+        String outcome = "evicted";
         try {
-            proceed = proceedingJoinPoint.proceed();
-        } catch (Throwable throwable) {
-            throwable.printStackTrace();
-        }
+            //删除redis的key值，模糊删除时使用SCAN分批删除
+            long start = System.nanoTime();
+            cacheMetrics.of(proceedingJoinPoint, metadata.getCacheName()).evicted(keyEvictor.evict(name));
+            nearCache.invalidate(name);//通知所有实例失效本地缓存
+            long evicted = System.nanoTime();
+            event.addEvict(evicted - start);
+            log.debug("环绕通知的目标方法名：{},keys={}", proceedingJoinPoint.getSignature().getName(), name);
 
-        //开一个线程 延迟1秒（此处是1秒举例，可以改成自己的业务）
-        // 在线程中延迟删除  同时将业务代码的结果返回 这样不影响业务代码的执行
-        String finalName = name;
-        new Thread(() -> {
+            //执行加入双删注解的改动数据库的业务 即controller中的方法业务
             try {
-                Thread.sleep(1000);
-                Set<String> keys1 = stringRedisTemplate.keys(finalName);//確切刪除
-                stringRedisTemplate.delete(keys1);
-                System.out.println("-----------1秒钟后，在线程中延迟删除完毕 -----------");
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+                proceed = proceedingJoinPoint.proceed();
+            } catch (Throwable throwable) {
+                outcome = "error";
+                log.error("{}方法执行失败", proceedingJoinPoint.getSignature().getName(), throwable);
+            }
+            event.addLoad(System.nanoTime() - evicted);
+        } finally {
+            if (versioned) {
+                cacheScripts.endWrite(name);
             }
-        }).start();
+        }
+
+        //提交到延迟双删调度器 默认延迟1秒（可以通过注解的delay修改）
+        // 由调度线程延迟删除  同时将业务代码的结果返回 这样不影响业务代码的执行
+        long delay = annotation != null ? annotation.delay() : 1000;
+        delayedEvictScheduler.schedule(name, delay);
+        cacheEvents.commit(event, "ClearAndReloadCache", metadata.getCacheName(), proceedingJoinPoint, name, outcome);
 
         return proceed;//返回业务代码的值
     }
@@ -1,39 +1,66 @@
 package com.mcsirius.cloud.redis.aspect;
 
 
-import cn.hutool.core.util.StrUtil;
 import com.mcsirius.cloud.redis.annotation.LockedCacheEvict;
-import com.mcsirius.cloud.redis.utils.SpelUtil;
+import com.mcsirius.cloud.redis.support.AsyncLocks;
+import com.mcsirius.cloud.redis.support.AsyncReturnType;
+import com.mcsirius.cloud.redis.support.CacheAsyncExecutor;
+import com.mcsirius.cloud.redis.support.CacheEvents;
+import com.mcsirius.cloud.redis.support.CacheInvocationEvent;
+import com.mcsirius.cloud.redis.support.CacheMetrics;
+import com.mcsirius.cloud.redis.support.CacheOperationMetadata;
+import com.mcsirius.cloud.redis.support.CacheOperationMetadataRegistry;
+import com.mcsirius.cloud.redis.support.CacheScripts;
+import com.mcsirius.cloud.redis.support.KeyEvictor;
+import com.mcsirius.cloud.redis.support.NearCache;
+import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
-import org.aspectj.lang.Signature;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Pointcut;
-import org.aspectj.lang.reflect.MethodSignature;
 import org.redisson.api.RLock;
 import org.redisson.api.RReadWriteLock;
 import org.redisson.api.RedissonClient;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.autoconfigure.cache.CacheProperties;
-import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Component;
 
-import java.lang.reflect.Method;
-import java.util.Objects;
-import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 @Aspect
 @Component
+@Slf4j
 public class LockedCacheEvictAspect {
 
     @Autowired
-    private StringRedisTemplate stringRedisTemplate;
+    private KeyEvictor keyEvictor;
 
     @Autowired
     private RedissonClient redissonClient;
 
     @Autowired
-    CacheProperties cacheProperties;
+    private NearCache nearCache;
+
+    @Autowired
+    private CacheOperationMetadataRegistry metadataRegistry;
+
+    @Autowired
+    private CacheMetrics cacheMetrics;
+
+    @Autowired
+    private CacheEvents cacheEvents;
+
+    @Autowired
+    private CacheScripts cacheScripts;
+
+    @Autowired
+    private CacheAsyncExecutor asyncExecutor;
+
+    /**
+     * JFR 事件中的注解类型
+     */
+    private static final String OPERATION = "LockedCacheEvict";
 
     /**
      * 切入点
@@ -52,56 +79,162 @@ public class LockedCacheEvictAspect {
      */
     @Around("pointCut()")
     public Object aroundAdvice(ProceedingJoinPoint proceedingJoinPoint){
-        System.out.println("----------- 环绕通知 -----------");
-        Signature signature1 = proceedingJoinPoint.getSignature();
-        MethodSignature methodSignature = (MethodSignature)signature1;
-        Method targetMethod = methodSignature.getMethod();//方法对象
-        LockedCacheEvict annotation = targetMethod.getAnnotation(LockedCacheEvict.class);//反射得到自定义注解的方法对象
-        String name = "";
-        String key;
-        //获取自定义注解的值，是否使用Spel表达式
-        if (annotation != null) {
-            if (StrUtil.isNotBlank(annotation.cacheName())) {
-                name = annotation.cacheName();
-            }
-            //注解上的描述
-            if (StrUtil.isNotBlank(annotation.key())) {
-                key = SpelUtil.generateKeyBySpEL(annotation.key(), proceedingJoinPoint);
-                if (!Objects.equals(name, "")) {
-                    name = name + ":";
-                }
-                name = name + key;
-            }
-            if (null != cacheProperties){
-                CacheProperties.Redis redisProperties = cacheProperties.getRedis();
-                if (redisProperties.isUseKeyPrefix() && redisProperties.getKeyPrefix() != null) {
-                    name = redisProperties.getKeyPrefix()+name;
-                }
-            }
+        //预先解析好的注解元数据，包括缓存名以及编译后的Spel表达式
+        CacheOperationMetadata<LockedCacheEvict> metadata = metadataRegistry.get(proceedingJoinPoint, LockedCacheEvict.class);
+        String name = metadata.resolveName(metadata.generateKey(proceedingJoinPoint.getArgs()));
+        CacheMetrics.Meters meters = cacheMetrics.of(proceedingJoinPoint, metadata.getCacheName());
+        log.debug("环绕通知的目标方法名：{},keys={}", proceedingJoinPoint.getSignature().getName(), name);
+
+        // 异步方法在返回的 future 完成后删除缓存，不阻塞调用线程
+        AsyncReturnType asyncReturnType = metadata.getAsyncReturnType();
+        CacheInvocationEvent event = cacheEvents.begin();
+        if (asyncReturnType != AsyncReturnType.NONE) {
+            return asyncReturnType.adapt(() -> evictAsync(proceedingJoinPoint, asyncReturnType, name, meters, event)
+                    .whenComplete((value, error) -> cacheEvents.commit(event, OPERATION, metadata.getCacheName(),
+                            proceedingJoinPoint, name, error != null ? "error" : "evicted")));
+        }
 
+        // 版本模式不加写锁
+        if (cacheScripts.isVersioned()) {
+            return evictVersioned(proceedingJoinPoint, metadata, name, meters, event);
         }
-        System.out.println("环绕通知的目标方法名：" + proceedingJoinPoint.getSignature().getName()+",keys="+name);
 
         //获取写锁
         RReadWriteLock rwLock = redissonClient.getReadWriteLock(name+":rw");
         RLock writeLock = rwLock.writeLock();
         Object proceed = null;
+        String outcome = "evicted";
         try {
+            long lockStart = System.nanoTime();
             writeLock.lock();
+            long locked = System.nanoTime();
+            event.addLockWait(locked - lockStart);
             try {
                 proceed = proceedingJoinPoint.proceed();
-                System.out.println(proceedingJoinPoint.getSignature().getName()+"方法执行结束");
+                log.debug("{}方法执行结束", proceedingJoinPoint.getSignature().getName());
             } catch (Throwable throwable) {
-                throwable.printStackTrace();
+                outcome = "error";
+                log.error("{}方法执行失败", proceedingJoinPoint.getSignature().getName(), throwable);
             }
+            long loaded = System.nanoTime();
+            event.addLoad(loaded - locked);
 
             //删除redis缓存中对应的key
-            Set<String> keys = stringRedisTemplate.keys(name);//確切刪除
-            stringRedisTemplate.delete(keys);//删除redis的key值
-            System.out.println("删除redis缓存中对应的key："+name);
+            meters.evicted(keyEvictor.evict(name));//删除redis的key值，模糊删除时使用SCAN分批删除
+            nearCache.invalidate(name);//通知所有实例失效本地缓存
+            event.addEvict(System.nanoTime() - loaded);
+            log.debug("删除redis缓存中对应的key：{}", name);
         } finally {
             writeLock.unlock();
+            cacheEvents.commit(event, OPERATION, metadata.getCacheName(), proceedingJoinPoint, name, outcome);
         }
         return proceed;//返回业务代码的值
     }
+
+    /**
+     * 版本模式：执行方法前把版本号变为奇数，删除缓存后再变为偶数
+     * 期间读取的线程等待删除完成（或读取当前值），期间开始加载的线程写回时发现版本号变化而放弃写回
+     * 模糊删除没有对应的版本号，只删除缓存
+     */
+    private Object evictVersioned(ProceedingJoinPoint proceedingJoinPoint, CacheOperationMetadata<LockedCacheEvict> metadata,
+                                  String name, CacheMetrics.Meters meters, CacheInvocationEvent event) {
+        boolean versioned = !KeyEvictor.isPattern(name);
+        Object proceed = null;
+        String outcome = "evicted";
+        if (versioned) {
+            cacheScripts.beginWrite(name);
+        }
+        try {
+            long start = System.nanoTime();
+            try {
+                proceed = proceedingJoinPoint.proceed();
+                log.debug("{}方法执行结束", proceedingJoinPoint.getSignature().getName());
+            } catch (Throwable throwable) {
+                outcome = "error";
+                log.error("{}方法执行失败", proceedingJoinPoint.getSignature().getName(), throwable);
+            }
+            long loaded = System.nanoTime();
+            event.addLoad(loaded - start);
+
+            meters.evicted(keyEvictor.evict(name));
+            nearCache.invalidate(name);
+            event.addEvict(System.nanoTime() - loaded);
+            log.debug("删除redis缓存中对应的key：{}", name);
+        } finally {
+            if (versioned) {
+                cacheScripts.endWrite(name);
+            }
+            cacheEvents.commit(event, OPERATION, metadata.getCacheName(), proceedingJoinPoint, name, outcome);
+        }
+        return proceed;
+    }
+
+    /**
+     * 异步方法：持有写锁执行方法，方法完成（包括失败）后删除缓存再释放写锁
+     * 目标方法在 CacheAsyncExecutor 中调用，并恢复调用线程的 MDC 和 LocaleContext
+     */
+    private CompletableFuture<Object> evictAsync(ProceedingJoinPoint proceedingJoinPoint, AsyncReturnType asyncReturnType,
+                                                 String name, CacheMetrics.Meters meters, CacheInvocationEvent event) {
+        Executor loadExecutor = asyncExecutor.withCallerContext();
+        if (cacheScripts.isVersioned()) {
+            return evictVersionedAsync(proceedingJoinPoint, asyncReturnType, name, meters, event, loadExecutor);
+        }
+        RLock writeLock = redissonClient.getReadWriteLock(name + ":rw").writeLock();
+        long lockId = AsyncLocks.newLockId();
+        long lockStart = System.nanoTime();
+        CompletableFuture<Object> proceed = writeLock.lockAsync(-1, TimeUnit.SECONDS, lockId).toCompletableFuture()
+                .thenComposeAsync(v -> {
+                    event.addLockWait(System.nanoTime() - lockStart);
+                    return asyncReturnType.proceed(proceedingJoinPoint);
+                }, loadExecutor);
+        return AsyncLocks.releaseAfter(evictAfter(proceedingJoinPoint, proceed, name, meters, event), writeLock, lockId);
+    }
+
+    /**
+     * evictVersioned 的异步版本，版本号脚本通过 RScript 异步执行
+     */
+    private CompletableFuture<Object> evictVersionedAsync(ProceedingJoinPoint proceedingJoinPoint,
+                                                          AsyncReturnType asyncReturnType, String name,
+                                                          CacheMetrics.Meters meters, CacheInvocationEvent event,
+                                                          Executor loadExecutor) {
+        boolean versioned = !KeyEvictor.isPattern(name);
+        CompletableFuture<Void> begin = versioned
+                ? cacheScripts.beginWriteAsync(name)
+                : CompletableFuture.completedFuture(null);
+        long start = System.nanoTime();
+        CompletableFuture<Object> proceed = begin
+                .thenComposeAsync(v -> asyncReturnType.proceed(proceedingJoinPoint), loadExecutor)
+                .whenComplete((value, error) -> event.addLoad(System.nanoTime() - start));
+        CompletableFuture<Object> evict = evictAfter(proceedingJoinPoint, proceed, name, meters, event);
+        if (!versioned) {
+            return evict;
+        }
+        // 删除完成（包括失败）后版本号变为偶数，返回的future在此之后才完成
+        return evict.handle((value, error) -> cacheScripts.endWriteAsync(name).handle((ignored, endError) -> {
+                    if (endError != null) {
+                        log.warn("删除完成后更新版本号失败：{}", name, endError);
+                    }
+                    return error != null ? CompletableFuture.failedFuture(error) : CompletableFuture.completedFuture(value);
+                }).thenCompose(future -> future))
+                .thenCompose(future -> future);
+    }
+
+    /**
+     * 方法完成（包括失败）后异步删除缓存，返回的future在删除完成后才完成，结果与方法相同；删除失败时返回删除的异常
+     * 精确的key直接异步 UNLINK，模糊删除在 CacheAsyncExecutor 中执行
+     */
+    private CompletableFuture<Object> evictAfter(ProceedingJoinPoint proceedingJoinPoint, CompletableFuture<Object> proceed,
+                                                 String name, CacheMetrics.Meters meters, CacheInvocationEvent event) {
+        return proceed.handle((value, error) -> {
+            log.debug("{}方法执行结束", proceedingJoinPoint.getSignature().getName());
+            long start = System.nanoTime();
+            return keyEvictor.evictAsync(name).thenCompose(count -> {
+                meters.evicted(count);
+                nearCache.invalidateAsync(name);
+                event.addEvict(System.nanoTime() - start);
+                log.debug("删除redis缓存中对应的key：{}", name);
+                return error != null ? CompletableFuture.failedFuture(error) : CompletableFuture.completedFuture(value);
+            });
+        }).thenCompose(future -> future);
+    }
 }
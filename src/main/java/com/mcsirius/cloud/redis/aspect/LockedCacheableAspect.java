@@ -1,30 +1,61 @@
 package com.mcsirius.cloud.redis.aspect;
 
 
-import cn.hutool.core.util.StrUtil;
 import com.mcsirius.cloud.redis.annotation.LockedCacheable;
-import com.mcsirius.cloud.redis.utils.SpelUtil;
+import com.mcsirius.cloud.redis.codec.CacheCodecRegistry;
+import com.mcsirius.cloud.redis.config.LockedCacheProperties;
+import com.mcsirius.cloud.redis.support.AsyncLocks;
+import com.mcsirius.cloud.redis.support.AsyncReturnType;
+import com.mcsirius.cloud.redis.support.BatchOperation;
+import com.mcsirius.cloud.redis.support.BloomFilterGuard;
+import com.mcsirius.cloud.redis.support.CacheAsyncExecutor;
+import com.mcsirius.cloud.redis.support.CacheEvents;
+import com.mcsirius.cloud.redis.support.CacheInvocationEvent;
+import com.mcsirius.cloud.redis.support.CacheKeyLayout;
+import com.mcsirius.cloud.redis.support.CacheMetrics;
+import com.mcsirius.cloud.redis.support.CacheOperationMetadata;
+import com.mcsirius.cloud.redis.support.CacheOperationMetadataRegistry;
+import com.mcsirius.cloud.redis.support.CacheRefresher;
+import com.mcsirius.cloud.redis.support.CacheScripts;
+import com.mcsirius.cloud.redis.support.HotKeyDetector;
+import com.mcsirius.cloud.redis.support.LockBackoff;
+import com.mcsirius.cloud.redis.support.NearCache;
+import com.mcsirius.cloud.redis.support.RefreshAheadEntry;
+import com.mcsirius.cloud.redis.support.SingleFlight;
+import com.mcsirius.cloud.redis.support.StaleValueGuard;
+import com.mcsirius.cloud.redis.support.TtlPolicy;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
-import org.aspectj.lang.Signature;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Pointcut;
-import org.aspectj.lang.reflect.MethodSignature;
+import org.redisson.api.RBucket;
 import org.redisson.api.RLock;
 import org.redisson.api.RReadWriteLock;
 import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.ByteArrayCodec;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.cache.CacheProperties;
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Component;
-import org.springframework.util.StringUtils;
 
-import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
-import java.time.format.DateTimeParseException;
-import java.util.Objects;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 @Aspect
@@ -41,6 +72,63 @@ public class LockedCacheableAspect {
     @Autowired
     CacheProperties cacheProperties;
 
+    @Autowired
+    private NearCache nearCache;
+
+    @Autowired
+    private LockedCacheProperties lockedCacheProperties;
+
+    @Autowired
+    private BloomFilterGuard bloomFilterGuard;
+
+    @Autowired
+    private SingleFlight singleFlight;
+
+    @Autowired
+    private CacheOperationMetadataRegistry metadataRegistry;
+
+    @Autowired
+    private CacheCodecRegistry cacheCodecRegistry;
+
+    @Autowired
+    private CacheRefresher cacheRefresher;
+
+    @Autowired
+    private StaleValueGuard staleValueGuard;
+
+    @Autowired
+    private CacheScripts cacheScripts;
+
+    @Autowired
+    private CacheMetrics cacheMetrics;
+
+    @Autowired
+    private CacheEvents cacheEvents;
+
+    @Autowired
+    private HotKeyDetector hotKeyDetector;
+
+    @Autowired
+    private CacheKeyLayout cacheKeyLayout;
+
+    @Autowired
+    private CacheAsyncExecutor asyncExecutor;
+
+    /**
+     * 空值占位在redis中的存储内容
+     */
+    private static final byte[] NULL_VALUE_BYTES = new byte[0];
+
+    /**
+     * 旧值副本的key后缀
+     */
+    private static final String STALE_SUFFIX = ":stale";
+
+    /**
+     * JFR 事件中的注解类型
+     */
+    private static final String OPERATION = "LockedCacheable";
+
     /**
      * 切入点
      *切入点,基于注解实现的切入点  加上该注解的都是Aop切面的切入点
@@ -58,119 +146,1153 @@ public class LockedCacheableAspect {
      */
     @Around("pointCut()")
     public Object aroundAdvice(ProceedingJoinPoint proceedingJoinPoint) {
-        System.out.println("----------- 环绕通知 -----------");
-        Signature signature1 = proceedingJoinPoint.getSignature();
-        MethodSignature methodSignature = (MethodSignature)signature1;
-        Method targetMethod = methodSignature.getMethod();//方法对象
-        LockedCacheable annotation = targetMethod.getAnnotation(LockedCacheable.class);//反射得到自定义注解的方法对象
-        String name = "";
-        String key;
-        Duration duration = null;
-        boolean sync = false;
-        //获取自定义注解的值，是否使用Spel表达式
-        if (annotation != null) {
-            if (StrUtil.isNotBlank(annotation.cacheName())) {
-                name = annotation.cacheName();
-            }
-            String[] array = StringUtils.delimitedListToStringArray(name, "#");
-            name = array[0];
-            if (array.length > 1) {
+        //预先解析好的注解元数据，包括缓存名、TTL以及编译后的Spel表达式
+        CacheOperationMetadata<LockedCacheable> metadata = metadataRegistry.get(proceedingJoinPoint, LockedCacheable.class);
+        LockedCacheable annotation = metadata.getAnnotation();
+        // 批量模式：集合参数中的每个元素单独缓存
+        if (metadata.getBatch() != null) {
+            return aroundBatch(proceedingJoinPoint, metadata);
+        }
+        String key = metadata.generateKey(proceedingJoinPoint.getArgs());
+        String name = metadata.resolveName(key);
+        String cacheName = metadata.getCacheName();
+        Duration duration = metadata.getDuration();
+        boolean sync = metadata.isSync();
+        boolean local = annotation != null && annotation.local();
+        log.debug("环绕通知的目标方法名：{},keys={}", proceedingJoinPoint.getSignature().getName(), name);
+
+        AsyncReturnType asyncReturnType = metadata.getAsyncReturnType();
+        CacheMetrics.Meters meters = cacheMetrics.of(proceedingJoinPoint, cacheName);
+
+        // 本地缓存的存活时间，为null时不使用本地缓存；未开启本地缓存的方法，热点key在本地缓存中保留一个短时间的副本
+        boolean hot = !local && hotKeyDetector.record(name, cacheName, key);
+        Duration localTtl = local ? (duration != null ? duration : lockedCacheProperties.getLocal().getTimeToLive())
+                : hot ? hotKeyDetector.replicaTimeToLive(duration) : null;
+
+        // 本地一级缓存命中时直接返回，不再访问redis
+        if (localTtl != null) {
+            Object cached = nearCache.get(name);
+            if (cached != null) {
+                meters.read(cached);
+                log.debug("读取了以下本地缓存：{}", name);
+                cacheEvents.commit(cacheEvents.begin(), OPERATION, cacheName, proceedingJoinPoint, name,
+                        (hot ? "hot_" : "local_") + outcomeOf(cached));
+                Object value = cached instanceof NullValue ? null : cached;
+                return asyncReturnType == AsyncReturnType.NONE ? value
+                        : asyncReturnType.adapt(() -> CompletableFuture.completedFuture(value));
+            }
+        }
+
+        boolean bloomFilter = annotation != null && annotation.bloomFilter() && key != null;
+        // 异步方法的整个流程使用 redisson 的异步接口，不阻塞调用线程
+        if (asyncReturnType != AsyncReturnType.NONE) {
+            CacheInvocationEvent event = cacheEvents.begin();
+            return asyncReturnType.adapt(() -> aroundAsync(proceedingJoinPoint, metadata, key, name, localTtl, bloomFilter, event)
+                    .whenComplete((value, error) -> cacheEvents.commit(event, OPERATION, cacheName, proceedingJoinPoint,
+                            name, error != null ? "error" : null)));
+        }
+
+        CacheInvocationEvent event = cacheEvents.begin();
+        try {
+            return aroundSync(proceedingJoinPoint, metadata, key, name, localTtl, bloomFilter, meters, event);
+        } catch (RuntimeException e) {
+            event.setOutcome("error");
+            throw e;
+        } finally {
+            cacheEvents.commit(event, OPERATION, cacheName, proceedingJoinPoint, name, null);
+        }
+    }
+
+    /**
+     * 同步方法的缓存流程：布隆过滤器 -> 读锁 -> 读取redis -> sync时持有 name:sync 锁执行方法并写入redis
+     * 各阶段耗时记录到 event 中
+     */
+    private Object aroundSync(ProceedingJoinPoint proceedingJoinPoint, CacheOperationMetadata<LockedCacheable> metadata,
+                              String key, String name, Duration localTtl, boolean bloomFilter, CacheMetrics.Meters meters,
+                              CacheInvocationEvent event) {
+        LockedCacheable annotation = metadata.getAnnotation();
+        String cacheName = metadata.getCacheName();
+        boolean sync = metadata.isSync();
+        // 布隆过滤器判定不存在的key直接返回，不加锁也不访问redis
+        if (bloomFilter && !bloomFilterGuard.mightContain(cacheName, key,
+                annotation.expectedInsertions(), annotation.falseProbability())) {
+            meters.negativeHit();
+            event.setOutcome("bloom_rejected");
+            log.debug("布隆过滤器判定不存在：{}", name);
+            return null;
+        }
+
+        // 版本模式不加读锁
+        if (cacheScripts.isVersioned()) {
+            return readVersioned(proceedingJoinPoint, metadata, key, name, localTtl, bloomFilter, meters, event);
+        }
+
+        // 开启lua脚本时先用一次调用检查写锁并读取缓存，命中时不再获取读锁；sync时未命中的同一次调用中获取 sync 锁
+        // 使用本地缓存时仍走加锁流程，保证本地缓存的写入与删除不交错
+        if (cacheScripts.isEnabled() && localTtl == null) {
+            long start = System.nanoTime();
+            CacheScripts.ScriptedRead read = cacheScripts.read(name + ":rw", name,
+                    metadata.getTtlPolicy().isSliding() ? metadata.getTtlPolicy().nextTtl() : null,
+                    sync ? name + ":sync" : null);
+            event.addRedisRead(System.nanoTime() - start);
+            if (read.getRawValue() != null) {
+                Object cached = decodeScripted(proceedingJoinPoint, metadata, name, key, bloomFilter, read.getRawValue(), event);
+                meters.read(cached);
+                event.setOutcome(outcomeOf(cached));
+                return cached instanceof NullValue ? null : cached;
+            }
+            if (read.isLocked()) {
+                meters.read(null);
+                Object proceed = loadWithScriptLock(proceedingJoinPoint, metadata, name, key, bloomFilter, meters, event);
+                return proceed instanceof NullValue ? null : proceed;
+            }
+        }
+
+        Object proceed;
+        //获取读锁
+        RReadWriteLock rwLock = redissonClient.getReadWriteLock(name+":rw");
+        RLock readLock = rwLock.readLock();
+        lockRead(readLock, name, meters, event);
+        try {
+            proceed = getObjectFromRedis(name, metadata.getTtlPolicy(), event);
+            meters.read(proceed);
+            event.setOutcome(outcomeOf(proceed));
+            if (proceed instanceof RefreshAheadEntry entry) {
+                // 按概率提前触发后台刷新，本次仍返回当前值
+                if (annotation.refreshAhead() && entry.shouldRefresh(annotation.refreshBeta())) {
+                    refreshInBackground(proceedingJoinPoint, metadata, name, key, bloomFilter);
+                }
+                proceed = entry.getValue();
+            }
+            if (sync && proceed == null) {
+                // 同一实例内同一个key只有一个线程去竞争分布式锁并执行方法，其余线程直接等待它的结果
+                proceed = singleFlight.execute(name, () ->
+                        loadWithSyncLock(proceedingJoinPoint, metadata, name, key, bloomFilter, event));
+            }
+            // 在持有读锁时写入本地缓存，避免与写锁下的删除交错导致本地缓存脏数据
+            if (localTtl != null) {
+                nearCache.put(name, proceed, localTtl);
+            }
+        } finally {
+            readLock.unlock();
+        }
+        return proceed instanceof NullValue ? null : proceed;//返回业务代码的值
+    }
+
+    /**
+     * 按退避时间等待读锁，超时抛出异常
+     */
+    private void lockRead(RLock readLock, String name, CacheMetrics.Meters meters, CacheInvocationEvent event) {
+        LockBackoff backoff = new LockBackoff(lockedCacheProperties.getLock());
+        long lockStart = System.nanoTime();
+        try {
+            // 写锁释放时 redisson 通过 pub/sub 唤醒等待的线程，不需要固定间隔轮询
+            while (true) {
+                long wait = backoff.nextWait();
+                if (wait < 0) {
+                    throw new IllegalStateException("等待读锁超时：" + name);
+                }
+                if (readLock.tryLock(wait, -1, TimeUnit.MILLISECONDS)) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        long lockWait = System.nanoTime() - lockStart;
+        meters.readLockWait(lockWait);
+        event.addLockWait(lockWait);
+    }
+
+    /**
+     * 版本模式的同步流程：不加读锁，一次调用读取缓存和版本号
+     * 版本号为奇数时有删除正在进行，按退避时间等待删除完成，开启 staleReads 时直接返回当前值
+     * sync时未命中则执行方法，按读取时的版本号比较后写回，期间有删除时放弃写回
+     */
+    private Object readVersioned(ProceedingJoinPoint proceedingJoinPoint, CacheOperationMetadata<LockedCacheable> metadata,
+                                 String key, String name, Duration localTtl, boolean bloomFilter, CacheMetrics.Meters meters,
+                                 CacheInvocationEvent event) {
+        LockedCacheable annotation = metadata.getAnnotation();
+        TtlPolicy ttlPolicy = metadata.getTtlPolicy();
+        LockBackoff backoff = null;
+        long waitStart = System.nanoTime();
+        while (true) {
+            long start = System.nanoTime();
+            CacheScripts.VersionedValue versioned = cacheScripts.readVersioned(name,
+                    ttlPolicy.isSliding() ? ttlPolicy.nextTtl() : null);
+            long read = System.nanoTime();
+            event.addRedisRead(read - start);
+            Object cached = versioned.getRawValue() != null ? decodeValue(versioned.getRawValue()) : null;
+            event.addDecode(System.nanoTime() - read);
+            if (versioned.isWriting() && !(cacheScripts.isStaleReads() && cached != null)) {
+                // 删除完成时没有通知，按退避时间重新读取
+                if (backoff == null) {
+                    backoff = new LockBackoff(lockedCacheProperties.getLock());
+                    meters.contention();
+                }
+                long wait = backoff.nextWait();
+                if (wait < 0) {
+                    throw new IllegalStateException("等待缓存删除完成超时：" + name);
+                }
                 try {
-                    duration = Duration.parse(array[1]);
-                } catch (DateTimeParseException e) {
-                    log.error("错误的 TTL 格式");
-                    throw e;
+                    Thread.sleep(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
                 }
+                continue;
+            }
+            if (backoff != null) {
+                // 等待删除完成的时间与等待读锁的时间记在一起
+                long lockWait = System.nanoTime() - waitStart;
+                meters.readLockWait(lockWait);
+                event.addLockWait(lockWait);
             }
-            //注解上的描述
-            if (StrUtil.isNotBlank(annotation.key())) {
-                key = SpelUtil.generateKeyBySpEL(annotation.key(), proceedingJoinPoint);
-                if (!Objects.equals(name, "")) {
-                    name = name + ":";
+            meters.read(cached);
+            event.setOutcome(versioned.isWriting() ? "stale_read" : outcomeOf(cached));
+            Object proceed = cached;
+            if (proceed instanceof RefreshAheadEntry entry) {
+                if (annotation.refreshAhead() && entry.shouldRefresh(annotation.refreshBeta())) {
+                    refreshInBackground(proceedingJoinPoint, metadata, name, key, bloomFilter);
                 }
-                name = name + key;
+                proceed = entry.getValue();
             }
-            if (null != cacheProperties){
-                CacheProperties.Redis redisProperties = cacheProperties.getRedis();
-                if (redisProperties.isUseKeyPrefix() && redisProperties.getKeyPrefix() != null) {
-                    name = redisProperties.getKeyPrefix()+name;
+            if (metadata.isSync() && proceed == null) {
+                String version = versioned.getVersion();
+                proceed = singleFlight.execute(name, () ->
+                        loadVersioned(proceedingJoinPoint, metadata, name, key, bloomFilter, version, event));
+            }
+            // 删除进行中读到的值不写入本地缓存；写入后才开始的删除会通过失效通知清理本地缓存
+            if (localTtl != null && !versioned.isWriting()) {
+                nearCache.put(name, proceed, localTtl);
+            }
+            return proceed instanceof NullValue ? null : proceed;
+        }
+    }
+
+    /**
+     * 版本模式下执行方法并按版本号写回，不加 sync 锁，同一实例内由 singleFlight 合并
+     * 开启 staleWhileError 时，方法抛出异常或超时后返回旧值副本
+     */
+    private Object loadVersioned(ProceedingJoinPoint proceedingJoinPoint, CacheOperationMetadata<LockedCacheable> metadata,
+                                 String name, String key, boolean bloomFilter, String version, CacheInvocationEvent event) {
+        boolean staleWhileError = metadata.getAnnotation().staleWhileError();
+        CacheMetrics.Meters meters = cacheMetrics.of(proceedingJoinPoint, metadata.getCacheName());
+        if (staleWhileError && !staleValueGuard.reloadAllowed(name)) {
+            // 最近加载失败过，重试间隔内直接返回旧值
+            Object stale = getStaleFromRedis(name);
+            if (stale != null) {
+                event.setOutcome("stale");
+                return stale;
+            }
+        }
+        try {
+            long start = System.nanoTime();
+            Object proceed = timedLoad(meters, staleWhileError ? () -> staleValueGuard.load(proceedingJoinPoint::proceed)
+                    : proceedingJoinPoint::proceed);
+            long loaded = System.nanoTime();
+            event.addLoad(loaded - start);
+            proceed = writeLoadedValue(proceedingJoinPoint, metadata, name, key, bloomFilter, proceed,
+                    TimeUnit.NANOSECONDS.toMillis(loaded - start), version);
+            event.addRedisWrite(System.nanoTime() - loaded);
+            event.setOutcome("loaded");
+            if (staleWhileError) {
+                staleValueGuard.loadSucceeded(name);
+            }
+            return proceed;
+        } catch (Throwable e) {
+            if (staleWhileError) {
+                if (!(e instanceof RejectedExecutionException)) {
+                    // 加载线程已满时没有调用后端，不计为加载失败
+                    staleValueGuard.loadFailed(name);
+                }
+                Object stale = getStaleFromRedis(name);
+                if (stale != null) {
+                    log.warn("加载缓存失败，返回旧值：{}", name, e);
+                    event.setOutcome("stale");
+                    return stale;
                 }
             }
-            sync = annotation.sync();
+            throw new RuntimeException(e);
         }
-        System.out.println("环绕通知的目标方法名：" + proceedingJoinPoint.getSignature().getName()+",keys="+name);
+    }
 
-        Object proceed;
-        //获取写锁
-        RReadWriteLock rwLock = redissonClient.getReadWriteLock(name+":rw");
-        RLock readLock = rwLock.readLock();
-        while(true) {
+    /**
+     * 解码lua脚本读到的缓存，按概率触发提前刷新
+     */
+    private Object decodeScripted(ProceedingJoinPoint proceedingJoinPoint, CacheOperationMetadata<LockedCacheable> metadata,
+                                  String name, String key, boolean bloomFilter, byte[] rawValue, CacheInvocationEvent event) {
+        long read = System.nanoTime();
+        log.debug("读取了以下redis缓存：{}", name);
+        Object cached = decodeValue(rawValue);
+        event.addDecode(System.nanoTime() - read);
+        if (cached instanceof RefreshAheadEntry entry) {
+            LockedCacheable annotation = metadata.getAnnotation();
+            if (annotation.refreshAhead() && entry.shouldRefresh(annotation.refreshBeta())) {
+                refreshInBackground(proceedingJoinPoint, metadata, name, key, bloomFilter);
+            }
+            cached = entry.getValue();
+        }
+        return cached;
+    }
+
+    /**
+     * 批量模式：一次MGET读取所有元素的缓存（开启 hash tag 时按slot分组），只用缺失的元素调用方法，结果用一次pipeline连同TTL写回
+     * 返回值按集合参数原来的顺序组装；批量模式不对单个元素加锁，也不使用本地缓存和布隆过滤器
+     * 版本模式下版本号与缓存在同一次MGET中读取，加载结果按版本号比较后写回；删除进行中的元素按未命中处理且不写回
+     */
+    private Object aroundBatch(ProceedingJoinPoint proceedingJoinPoint, CacheOperationMetadata<LockedCacheable> metadata) {
+        BatchOperation batch = metadata.getBatch();
+        CacheMetrics.Meters meters = cacheMetrics.of(proceedingJoinPoint, metadata.getCacheName());
+        Object[] args = proceedingJoinPoint.getArgs();
+        Collection<?> elements = (Collection<?>) args[batch.getParameterIndex()];
+        try {
+            if (elements == null || elements.isEmpty()) {
+                return proceedingJoinPoint.proceed(args);
+            }
+            // 去重后按元素计算缓存key
+            Map<String, Object> distinct = new LinkedHashMap<>();
+            for (Object element : elements) {
+                distinct.putIfAbsent(String.valueOf(element), element);
+            }
+            List<String> elementKeys = new ArrayList<>(distinct.keySet());
+            int size = elementKeys.size();
+            boolean versioned = cacheScripts.isVersioned();
+            byte[][] rawKeys = new byte[versioned ? size * 2 : size][];
+            for (int i = 0; i < size; i++) {
+                String name = metadata.resolveName(elementKeys.get(i));
+                rawKeys[i] = rawKey(name);
+                if (versioned) {
+                    rawKeys[size + i] = rawKey(CacheScripts.versionName(name));
+                }
+            }
+            List<byte[]> rawValues = mGetBySlot(rawKeys);
+            // 版本模式下可以写回的元素及读取时的版本号
+            Map<String, String> versions = versioned ? new HashMap<>() : null;
+            Map<String, Object> results = new HashMap<>();
+            List<Object> missing = new ArrayList<>();
+            int negativeHits = 0;
+            for (int i = 0; i < size; i++) {
+                byte[] rawValue = rawValues != null ? rawValues.get(i) : null;
+                if (versioned) {
+                    byte[] rawVersion = rawValues != null ? rawValues.get(size + i) : null;
+                    String version = rawVersion != null ? new String(rawVersion, StandardCharsets.UTF_8) : "0";
+                    if (!CacheScripts.isWriting(version)) {
+                        versions.put(elementKeys.get(i), version);
+                    } else if (!(cacheScripts.isStaleReads() && rawValue != null)) {
+                        rawValue = null;
+                    }
+                }
+                if (rawValue == null) {
+                    missing.add(distinct.get(elementKeys.get(i)));
+                    continue;
+                }
+                Object value = valueOf(decodeValue(rawValue));
+                if (!(value instanceof NullValue)) {
+                    results.put(elementKeys.get(i), value);
+                } else {
+                    negativeHits++;
+                }
+            }
+            meters.hits(size - missing.size() - negativeHits);
+            meters.negativeHits(negativeHits);
+            meters.misses(missing.size());
+            log.debug("批量读取了redis缓存：{}，命中 {}/{}", metadata.getCacheName(),
+                    size - missing.size(), size);
+            if (!missing.isEmpty()) {
+                Object proceed = timedLoad(meters, () -> proceedingJoinPoint.proceed(batch.argsFor(args, missing)));
+                log.debug("{}方法执行结束", proceedingJoinPoint.getSignature().getName());
+                Map<String, Object> loaded = batch.resultsByKey(proceed);
+                setBatchToRedis(metadata, meters, missing, loaded, versions);
+                results.putAll(loaded);
+            }
+            return batch.assemble(elements, results);
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 批量读取：开启 hash tag 时key分布在不同的slot，按slot分组，每组一条MGET，在一次pipeline中执行
+     * 未开启时只有一组，直接执行一条MGET
+     */
+    @SuppressWarnings("unchecked")
+    private List<byte[]> mGetBySlot(byte[][] rawKeys) {
+        Collection<List<Integer>> groups = cacheKeyLayout.groupBySlot(rawKeys);
+        if (groups.size() == 1) {
+            return redisTemplate.execute((RedisCallback<List<byte[]>>) connection ->
+                    connection.stringCommands().mGet(rawKeys));
+        }
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (List<Integer> group : groups) {
+                connection.stringCommands().mGet(group.stream().map(i -> rawKeys[i]).toArray(byte[][]::new));
+            }
+            return null;
+        }, RedisSerializer.byteArray());
+        byte[][] rawValues = new byte[rawKeys.length][];
+        int groupIndex = 0;
+        for (List<Integer> group : groups) {
+            List<byte[]> values = (List<byte[]>) results.get(groupIndex++);
+            for (int i = 0; values != null && i < group.size(); i++) {
+                rawValues[group.get(i)] = values.get(i);
+            }
+        }
+        return Arrays.asList(rawValues);
+    }
+
+    /**
+     * 用一次pipeline写回批量加载的结果，每个key单独计算TTL；没有结果的元素写入空值占位
+     * @param versions 版本模式下元素读取时的版本号，逐个按版本号比较后写回，不在其中的元素不写回；非版本模式为null
+     */
+    private void setBatchToRedis(CacheOperationMetadata<LockedCacheable> metadata, CacheMetrics.Meters meters,
+                                 List<Object> missing, Map<String, Object> loaded, Map<String, String> versions) {
+        boolean cacheNullValues = isCacheNullValues();
+        if (versions != null) {
+            for (Object element : missing) {
+                String elementKey = String.valueOf(element);
+                String version = versions.get(elementKey);
+                if (version == null) {
+                    continue;
+                }
+                String name = metadata.resolveName(elementKey);
+                Object value = loaded.get(elementKey);
+                if (value != null) {
+                    Duration ttl = metadata.getTtlPolicy().nextTtl();
+                    byte[] rawValue = encodeValue(metadata, value, 0, ttl);
+                    meters.valueSize(rawValue.length);
+                    compareAndSet(name, version, rawValue, ttl, false);
+                } else if (cacheNullValues) {
+                    compareAndSet(name, version, NULL_VALUE_BYTES, nullValueTtl(metadata.getDuration()), false);
+                }
+            }
+            return;
+        }
+        Expiration nullExpiration = Expiration.from(nullValueTtl(metadata.getDuration()));
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Object element : missing) {
+                String elementKey = String.valueOf(element);
+                byte[] rawKey = rawKey(metadata.resolveName(elementKey));
+                Object value = loaded.get(elementKey);
+                if (value != null) {
+                    Duration ttl = metadata.getTtlPolicy().nextTtl();
+                    Expiration expiration = ttl != null ? Expiration.from(ttl) : Expiration.persistent();
+                    byte[] rawValue = encodeValue(metadata, value, 0, ttl);
+                    meters.valueSize(rawValue.length);
+                    connection.stringCommands().set(rawKey, rawValue, expiration, RedisStringCommands.SetOption.upsert());
+                } else if (cacheNullValues) {
+                    connection.stringCommands().set(rawKey, NULL_VALUE_BYTES, nullExpiration,
+                            RedisStringCommands.SetOption.upsert());
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 持有分布式锁 name:sync 执行方法并写入缓存，未抢到锁时等待其他实例写入缓存
+     * 等待时间有上限，超时抛出异常
+     * 开启 staleWhileError 时，方法抛出异常或超时后返回旧值副本，并在重试间隔内不再执行方法
+     */
+    private Object loadWithSyncLock(ProceedingJoinPoint proceedingJoinPoint, CacheOperationMetadata<LockedCacheable> metadata,
+                                    String name, String key, boolean bloomFilter, CacheInvocationEvent event) {
+        RLock rLock = redissonClient.getLock(name + ":sync");
+        LockBackoff backoff = new LockBackoff(lockedCacheProperties.getLock());
+        CacheMetrics.Meters meters = cacheMetrics.of(proceedingJoinPoint, metadata.getCacheName());
+        long lockStart = System.nanoTime();
+        boolean contended = false;
+        while (true) {
+            Object proceed = valueOf(getObjectFromRedis(name, TtlPolicy.persistent(), event));
+            if (proceed != null) {
+                if (contended) {
+                    meters.syncLockWait(System.nanoTime() - lockStart);
+                    event.addLockWait(System.nanoTime() - lockStart);
+                }
+                return proceed;
+            }
+            boolean isLocked;
             try {
-                boolean isReadLocked = readLock.tryLock(0, -1, TimeUnit.SECONDS);
-                if (!isReadLocked) {
-                    Thread.sleep(500);
+                // 加载完成释放锁时等待者会被立即唤醒，醒来后重新读取redis
+                long wait = backoff.nextWait();
+                if (wait < 0) {
+                    throw new IllegalStateException("等待缓存加载超时：" + name);
+                }
+                isLocked = rLock.tryLock(wait, -1, TimeUnit.MILLISECONDS);
+                if (!isLocked) {
+                    if (!contended) {
+                        contended = true;
+                        meters.contention();
+                    }
                     continue;
                 }
+                long lockWait = System.nanoTime() - lockStart;
+                meters.syncLockWait(lockWait);
+                event.addLockWait(lockWait);
             } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
                 throw new RuntimeException(e);
             }
-            if (sync) {
-                while (true) {
-                    proceed = getObjectFromRedis(name);
-                    if (proceed == null) {
-                        RLock rLock = redissonClient.getLock(name + ":sync");
-                        boolean isLocked = false;
-                        try {
-                            isLocked = !rLock.tryLock(0, -1, TimeUnit.SECONDS);
-                        } catch (InterruptedException e) {
-                            throw new RuntimeException(e);
-                        }
-                        System.out.println(isLocked);
-                        if (isLocked) {
-                            try {
-                                Thread.sleep(500);
-                            } catch (InterruptedException e) {
-                                throw new RuntimeException(e);
-                            }
-                        } else {
-                            try {
-                                proceed = proceedingJoinPoint.proceed();
-                                System.out.println(proceedingJoinPoint.getSignature().getName() + "方法执行结束");
-                                redisTemplate.opsForValue().set(name, proceed);
-                                if (duration != null) {
-                                    redisTemplate.expire(name, duration);
-                                }
-                                System.out.println("写入了以下redis缓存：" + name);
-                            } catch (Throwable e) {
-                                throw new RuntimeException(e);
-                            } finally {
-                                // 释放锁
-                                rLock.unlock();
-                                break;
+            try {
+                // 等待期间其他线程可能已经写入缓存
+                proceed = valueOf(getObjectFromRedis(name, TtlPolicy.persistent(), event));
+                if (proceed != null) {
+                    return proceed;
+                }
+                return loadHoldingSyncLock(proceedingJoinPoint, metadata, name, key, bloomFilter, meters, event);
+            } finally {
+                // 释放锁
+                rLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * lua脚本读取未命中时已为当前线程获取了 name:sync 锁：再获取读锁后执行方法并写入缓存，最后通过 redisson 释放 sync 锁
+     * 先持有 sync 锁再等待读锁不会死锁：读锁只会被写锁阻塞，持有写锁的删除流程不获取 sync 锁
+     * 脚本获取的锁没有看门狗续期，加载超过租期时锁已过期，其他实例可能同时加载，释放时只记录日志
+     */
+    private Object loadWithScriptLock(ProceedingJoinPoint proceedingJoinPoint, CacheOperationMetadata<LockedCacheable> metadata,
+                                      String name, String key, boolean bloomFilter, CacheMetrics.Meters meters,
+                                      CacheInvocationEvent event) {
+        RLock rLock = redissonClient.getLock(name + ":sync");
+        try {
+            RLock readLock = redissonClient.getReadWriteLock(name + ":rw").readLock();
+            lockRead(readLock, name, meters, event);
+            try {
+                return loadHoldingSyncLock(proceedingJoinPoint, metadata, name, key, bloomFilter, meters, event);
+            } finally {
+                readLock.unlock();
+            }
+        } finally {
+            try {
+                rLock.unlock();
+            } catch (IllegalMonitorStateException e) {
+                log.warn("加载时间超过了 sync 锁的租期：{}", name);
+            }
+        }
+    }
+
+    /**
+     * 持有 sync 锁时执行方法并写入缓存
+     * 开启 staleWhileError 时，方法抛出异常或超时后返回旧值副本，并在重试间隔内不再执行方法
+     */
+    private Object loadHoldingSyncLock(ProceedingJoinPoint proceedingJoinPoint, CacheOperationMetadata<LockedCacheable> metadata,
+                                       String name, String key, boolean bloomFilter, CacheMetrics.Meters meters,
+                                       CacheInvocationEvent event) {
+        boolean staleWhileError = metadata.getAnnotation().staleWhileError();
+        try {
+            if (staleWhileError && !staleValueGuard.reloadAllowed(name)) {
+                // 最近加载失败过，重试间隔内直接返回旧值
+                Object stale = getStaleFromRedis(name);
+                if (stale != null) {
+                    event.setOutcome("stale");
+                    return stale;
+                }
+            }
+            long start = System.nanoTime();
+            Object proceed = timedLoad(meters, staleWhileError ? () -> staleValueGuard.load(proceedingJoinPoint::proceed)
+                    : proceedingJoinPoint::proceed);
+            long loaded = System.nanoTime();
+            event.addLoad(loaded - start);
+            proceed = writeLoadedValue(proceedingJoinPoint, metadata, name, key, bloomFilter, proceed,
+                    TimeUnit.NANOSECONDS.toMillis(loaded - start), null);
+            event.addRedisWrite(System.nanoTime() - loaded);
+            event.setOutcome("loaded");
+            if (staleWhileError) {
+                staleValueGuard.loadSucceeded(name);
+            }
+            return proceed;
+        } catch (Throwable e) {
+            if (staleWhileError) {
+                if (!(e instanceof RejectedExecutionException)) {
+                    // 加载线程已满时没有调用后端，不计为加载失败
+                    staleValueGuard.loadFailed(name);
+                }
+                Object stale = getStaleFromRedis(name);
+                if (stale != null) {
+                    log.warn("加载缓存失败，返回旧值：{}", name, e);
+                    event.setOutcome("stale");
+                    return stale;
+                }
+            }
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 把方法的返回值写入redis，返回null且允许缓存空值时写入空值占位并返回 NullValue.INSTANCE
+     * @param delta 方法执行耗时（毫秒），开启提前刷新时与value一起保存
+     * @param version 版本模式下读取时的版本号，不为null时版本号未变化才写入
+     */
+    private Object writeLoadedValue(ProceedingJoinPoint proceedingJoinPoint, CacheOperationMetadata<LockedCacheable> metadata,
+                                    String name, String key, boolean bloomFilter, Object proceed, long delta,
+                                    String version) {
+        log.debug("{}方法执行结束", proceedingJoinPoint.getSignature().getName());
+        if (proceed != null) {
+            if (bloomFilter) {
+                bloomFilterGuard.put(metadata.getCacheName(), key, metadata.getAnnotation().expectedInsertions(),
+                        metadata.getAnnotation().falseProbability());
+            }
+            // 每次写入按过期策略计算TTL，同一批写入的key过期时间被打散
+            Duration ttl = metadata.getTtlPolicy().nextTtl();
+            byte[] rawValue = encodeValue(metadata, proceed, delta, ttl);
+            cacheMetrics.of(proceedingJoinPoint, metadata.getCacheName()).valueSize(rawValue.length);
+            boolean staleWhileError = metadata.getAnnotation().staleWhileError();
+            Duration staleTtl = lockedCacheProperties.getStaleWhileError().getStaleTimeToLive();
+            if (version != null) {
+                compareAndSet(name, version, rawValue, ttl, staleWhileError);
+            } else if (staleWhileError) {
+                // 缓存和旧值副本在一次pipeline中写入
+                setObjectsToRedis(name, rawValue, ttl, name + STALE_SUFFIX, staleTtl);
+            } else {
+                setObjectToRedis(name, rawValue, ttl);
+            }
+            log.debug("写入了以下redis缓存：{}", name);
+        } else if (isCacheNullValues()) {
+            // 方法返回null时写入空值占位，防止缓存穿透
+            if (version != null) {
+                compareAndSet(name, version, NULL_VALUE_BYTES, nullValueTtl(metadata.getDuration()), false);
+            } else {
+                setNullValueToRedis(name, metadata.getDuration());
+            }
+            proceed = NullValue.INSTANCE;
+            log.debug("写入了以下redis空值缓存：{}", name);
+        }
+        return proceed;
+    }
+
+    /**
+     * 在后台线程中重新执行方法并覆盖缓存
+     * 有写锁（正在删除缓存）或其他线程正在加载时放弃本次刷新，等下一次读取再触发
+     */
+    private void refreshInBackground(ProceedingJoinPoint proceedingJoinPoint, CacheOperationMetadata<LockedCacheable> metadata,
+                                     String name, String key, boolean bloomFilter) {
+        cacheRefresher.refresh(name, () -> {
+            if (cacheScripts.isVersioned()) {
+                // 版本模式不加锁，有删除正在进行时放弃刷新，写回时比较版本号
+                CacheScripts.VersionedValue versioned = cacheScripts.readVersioned(name, null);
+                if (!versioned.isWriting()) {
+                    reload(proceedingJoinPoint, metadata, name, key, bloomFilter, versioned.getVersion());
+                }
+                return;
+            }
+            RLock readLock = redissonClient.getReadWriteLock(name + ":rw").readLock();
+            if (!readLock.tryLock()) {
+                return;
+            }
+            try {
+                RLock rLock = redissonClient.getLock(name + ":sync");
+                if (!rLock.tryLock()) {
+                    return;
+                }
+                try {
+                    reload(proceedingJoinPoint, metadata, name, key, bloomFilter, null);
+                } finally {
+                    rLock.unlock();
+                }
+            } finally {
+                readLock.unlock();
+            }
+        });
+    }
+
+    /**
+     * 提前刷新：重新执行方法并覆盖缓存
+     * @param version 版本模式下读取时的版本号，其他模式为null
+     */
+    private void reload(ProceedingJoinPoint proceedingJoinPoint, CacheOperationMetadata<LockedCacheable> metadata,
+                        String name, String key, boolean bloomFilter, String version) {
+        try {
+            long start = System.nanoTime();
+            Object proceed = timedLoad(cacheMetrics.of(proceedingJoinPoint, metadata.getCacheName()), () ->
+                    metadata.getAsyncReturnType() == AsyncReturnType.NONE
+                            ? proceedingJoinPoint.proceed()
+                            : metadata.getAsyncReturnType().proceed(proceedingJoinPoint).join());
+            writeLoadedValue(proceedingJoinPoint, metadata, name, key, bloomFilter, proceed,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), version);
+            log.debug("提前刷新了以下redis缓存：{}", name);
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 异步方法的缓存流程，与同步流程相同：读锁 -> 读取redis -> sync时持有 name:sync 锁执行方法并写入redis
+     * 布隆过滤器、锁和读写redis都使用 redisson 的异步接口；目标方法在 CacheAsyncExecutor 中调用，并恢复调用线程的 MDC 和 LocaleContext
+     * JFR 事件只记录等待读锁和读取redis的耗时，加载阶段跨线程执行，计入总耗时
+     */
+    private CompletableFuture<Object> aroundAsync(ProceedingJoinPoint proceedingJoinPoint,
+                                                  CacheOperationMetadata<LockedCacheable> metadata, String key,
+                                                  String name, Duration localTtl, boolean bloomFilter,
+                                                  CacheInvocationEvent event) {
+        LockedCacheable annotation = metadata.getAnnotation();
+        CacheMetrics.Meters meters = cacheMetrics.of(proceedingJoinPoint, metadata.getCacheName());
+        Executor loadExecutor = asyncExecutor.withCallerContext();
+        CompletableFuture<Boolean> mightContain = bloomFilter
+                ? bloomFilterGuard.mightContainAsync(metadata.getCacheName(), key, annotation.expectedInsertions(),
+                        annotation.falseProbability())
+                : CompletableFuture.completedFuture(true);
+        return mightContain.thenCompose(contains -> {
+            if (!contains) {
+                meters.negativeHit();
+                event.setOutcome("bloom_rejected");
+                log.debug("布隆过滤器判定不存在：{}", name);
+                return CompletableFuture.completedFuture(null);
+            }
+            if (cacheScripts.isVersioned()) {
+                return readVersionedAsync(proceedingJoinPoint, metadata, key, name, localTtl, bloomFilter, event,
+                        loadExecutor, null, System.nanoTime());
+            }
+            RLock readLock = redissonClient.getReadWriteLock(name + ":rw").readLock();
+            long lockId = AsyncLocks.newLockId();
+            long lockStart = System.nanoTime();
+            CompletableFuture<Object> read = AsyncLocks.acquire(readLock, lockId,
+                            new LockBackoff(lockedCacheProperties.getLock()))
+                    .thenCompose(v -> {
+                        long locked = System.nanoTime();
+                        meters.readLockWait(locked - lockStart);
+                        event.addLockWait(locked - lockStart);
+                        return getObjectFromRedisAsync(name, metadata.getTtlPolicy())
+                                .whenComplete((cached, error) -> event.addRedisRead(System.nanoTime() - locked));
+                    })
+                    .thenCompose(cached -> {
+                        meters.read(cached);
+                        event.setOutcome(outcomeOf(cached));
+                        if (cached instanceof RefreshAheadEntry entry) {
+                            if (annotation.refreshAhead() && entry.shouldRefresh(annotation.refreshBeta())) {
+                                refreshInBackground(proceedingJoinPoint, metadata, name, key, bloomFilter);
                             }
+                            return CompletableFuture.completedFuture(entry.getValue());
                         }
-                    } else {
-                        break;
-                    }
+                        if (metadata.isSync() && cached == null) {
+                            return singleFlight.executeAsync(name, () -> loadWithSyncLockAsync(proceedingJoinPoint,
+                                    metadata, name, key, bloomFilter, loadExecutor));
+                        }
+                        return CompletableFuture.completedFuture(cached);
+                    })
+                    .thenApply(value -> {
+                        if (localTtl != null) {
+                            nearCache.put(name, value, localTtl);
+                        }
+                        return value;
+                    });
+            return AsyncLocks.releaseAfter(read, readLock, lockId);
+        }).thenApply(value -> value instanceof NullValue ? null : value);
+    }
+
+    /**
+     * readVersioned 的异步版本，脚本通过 RScript 异步执行；等待删除完成时使用延迟执行，不占用线程
+     * @param loadExecutor 调用目标方法的线程池，避免在 redisson 的IO线程上执行业务代码
+     * @param backoff 第一次读取时为null，删除进行中时创建
+     * @param waitStart 开始读取的时间（纳秒）
+     */
+    private CompletableFuture<Object> readVersionedAsync(ProceedingJoinPoint proceedingJoinPoint,
+                                                         CacheOperationMetadata<LockedCacheable> metadata, String key,
+                                                         String name, Duration localTtl, boolean bloomFilter,
+                                                         CacheInvocationEvent event, Executor loadExecutor,
+                                                         LockBackoff backoff, long waitStart) {
+        LockedCacheable annotation = metadata.getAnnotation();
+        TtlPolicy ttlPolicy = metadata.getTtlPolicy();
+        CacheMetrics.Meters meters = cacheMetrics.of(proceedingJoinPoint, metadata.getCacheName());
+        long start = System.nanoTime();
+        return cacheScripts.readVersionedAsync(name,
+                ttlPolicy.isSliding() ? ttlPolicy.nextTtl() : null).thenCompose(versioned -> {
+            event.addRedisRead(System.nanoTime() - start);
+            Object cached = versioned.getRawValue() != null ? decodeValue(versioned.getRawValue()) : null;
+            if (versioned.isWriting() && !(cacheScripts.isStaleReads() && cached != null)) {
+                LockBackoff next = backoff;
+                if (next == null) {
+                    next = new LockBackoff(lockedCacheProperties.getLock());
+                    meters.contention();
+                }
+                long wait = next.nextWait();
+                if (wait < 0) {
+                    return CompletableFuture.failedFuture(new IllegalStateException("等待缓存删除完成超时：" + name));
+                }
+                LockBackoff retryBackoff = next;
+                return CompletableFuture.runAsync(() -> { },
+                                CompletableFuture.delayedExecutor(wait, TimeUnit.MILLISECONDS))
+                        .thenCompose(v -> readVersionedAsync(proceedingJoinPoint, metadata, key, name, localTtl,
+                                bloomFilter, event, loadExecutor, retryBackoff, waitStart));
+            }
+            if (backoff != null) {
+                long lockWait = System.nanoTime() - waitStart;
+                meters.readLockWait(lockWait);
+                event.addLockWait(lockWait);
+            }
+            meters.read(cached);
+            event.setOutcome(versioned.isWriting() ? "stale_read" : outcomeOf(cached));
+            CompletableFuture<Object> value;
+            if (cached instanceof RefreshAheadEntry entry) {
+                if (annotation.refreshAhead() && entry.shouldRefresh(annotation.refreshBeta())) {
+                    refreshInBackground(proceedingJoinPoint, metadata, name, key, bloomFilter);
                 }
+                value = CompletableFuture.completedFuture(entry.getValue());
+            } else if (metadata.isSync() && cached == null) {
+                value = singleFlight.executeAsync(name, () -> CompletableFuture.completedFuture(versioned)
+                        .thenComposeAsync(v -> loadAsync(proceedingJoinPoint, metadata, name, key, bloomFilter,
+                                v.getVersion()), loadExecutor));
             } else {
-                proceed = getObjectFromRedis(name);
+                value = CompletableFuture.completedFuture(cached);
             }
-            readLock.unlock();
-            break;
+            return value.thenApply(loaded -> {
+                if (localTtl != null && !versioned.isWriting()) {
+                    nearCache.put(name, loaded, localTtl);
+                }
+                return loaded;
+            });
+        });
+    }
+
+    /**
+     * loadWithSyncLock 的异步版本
+     * @param loadExecutor 调用目标方法的线程池，避免在 redisson 的IO线程上执行业务代码
+     */
+    private CompletableFuture<Object> loadWithSyncLockAsync(ProceedingJoinPoint proceedingJoinPoint,
+                                                            CacheOperationMetadata<LockedCacheable> metadata,
+                                                            String name, String key, boolean bloomFilter,
+                                                            Executor loadExecutor) {
+        return loadWithSyncLockAsync(proceedingJoinPoint, metadata, name, key, bloomFilter, loadExecutor,
+                new LockBackoff(lockedCacheProperties.getLock()), System.nanoTime(), false);
+    }
+
+    /**
+     * @param lockStart 开始等待的时间（纳秒）
+     * @param contended 之前是否已经因为锁被占用而等待过
+     */
+    private CompletableFuture<Object> loadWithSyncLockAsync(ProceedingJoinPoint proceedingJoinPoint,
+                                                            CacheOperationMetadata<LockedCacheable> metadata,
+                                                            String name, String key, boolean bloomFilter,
+                                                            Executor loadExecutor, LockBackoff backoff, long lockStart,
+                                                            boolean contended) {
+        CacheMetrics.Meters meters = cacheMetrics.of(proceedingJoinPoint, metadata.getCacheName());
+        return getObjectFromRedisAsync(name).thenApply(LockedCacheableAspect::valueOf).thenCompose(cached -> {
+            if (cached != null) {
+                if (contended) {
+                    meters.syncLockWait(System.nanoTime() - lockStart);
+                }
+                return CompletableFuture.completedFuture(cached);
+            }
+            long wait = backoff.nextWait();
+            if (wait < 0) {
+                return CompletableFuture.failedFuture(new IllegalStateException("等待缓存加载超时：" + name));
+            }
+            RLock rLock = redissonClient.getLock(name + ":sync");
+            long lockId = AsyncLocks.newLockId();
+            return rLock.tryLockAsync(wait, -1, TimeUnit.MILLISECONDS, lockId).toCompletableFuture().thenCompose(isLocked -> {
+                if (!isLocked) {
+                    if (!contended) {
+                        meters.contention();
+                    }
+                    return loadWithSyncLockAsync(proceedingJoinPoint, metadata, name, key, bloomFilter, loadExecutor,
+                            backoff, lockStart, true);
+                }
+                meters.syncLockWait(System.nanoTime() - lockStart);
+                CompletableFuture<Object> load = getObjectFromRedisAsync(name)
+                        .thenApply(LockedCacheableAspect::valueOf)
+                        .thenComposeAsync(loaded -> loaded != null ? CompletableFuture.completedFuture(loaded)
+                                : loadAsync(proceedingJoinPoint, metadata, name, key, bloomFilter, null), loadExecutor);
+                return AsyncLocks.releaseAfter(load, rLock, lockId);
+            });
+        });
+    }
+
+    /**
+     * 执行方法并写入redis，开启 staleWhileError 时失败或超时返回旧值副本
+     * @param version 版本模式下读取时的版本号，不为null时版本号未变化才写入
+     */
+    private CompletableFuture<Object> loadAsync(ProceedingJoinPoint proceedingJoinPoint,
+                                                CacheOperationMetadata<LockedCacheable> metadata,
+                                                String name, String key, boolean bloomFilter, String version) {
+        boolean staleWhileError = metadata.getAnnotation().staleWhileError();
+        if (staleWhileError && !staleValueGuard.reloadAllowed(name)) {
+            // 最近加载失败过，重试间隔内有旧值时直接返回
+            return getObjectFromRedisAsync(name + STALE_SUFFIX).thenCompose(stale -> stale != null
+                    ? CompletableFuture.completedFuture(valueOf(stale))
+                    : loadAndWriteAsync(proceedingJoinPoint, metadata, name, key, bloomFilter, version));
         }
-        return proceed;//返回业务代码的值
+        return loadAndWriteAsync(proceedingJoinPoint, metadata, name, key, bloomFilter, version);
     }
 
-    private Object getObjectFromRedis(String name) {
-        Set<String> keys = redisTemplate.keys(name);
-        if (keys != null && !keys.isEmpty()) {
-            // 如果成功获取redis缓存，则直接返回缓存
-            Object proceed = redisTemplate.opsForValue().get(name);
-            System.out.println("读取了以下redis缓存：" + name);
+    private CompletableFuture<Object> loadAndWriteAsync(ProceedingJoinPoint proceedingJoinPoint,
+                                                        CacheOperationMetadata<LockedCacheable> metadata,
+                                                        String name, String key, boolean bloomFilter, String version) {
+        boolean staleWhileError = metadata.getAnnotation().staleWhileError();
+        CacheMetrics.Meters meters = cacheMetrics.of(proceedingJoinPoint, metadata.getCacheName());
+        long start = System.nanoTime();
+        CompletableFuture<Object> proceed = metadata.getAsyncReturnType().proceed(proceedingJoinPoint);
+        if (staleWhileError && staleValueGuard.getLoadTimeout() > 0) {
+            proceed = proceed.orTimeout(staleValueGuard.getLoadTimeout(), TimeUnit.MILLISECONDS);
+        }
+        proceed = proceed.whenComplete((value, error) -> meters.load(System.nanoTime() - start, error == null));
+        CompletableFuture<Object> load = proceed.thenCompose(value -> writeLoadedValueAsync(proceedingJoinPoint,
+                metadata, name, key, bloomFilter, value, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                version));
+        if (!staleWhileError) {
+            return load;
+        }
+        return load.handle((value, error) -> {
+            if (error == null) {
+                staleValueGuard.loadSucceeded(name);
+                return CompletableFuture.completedFuture(value);
+            }
+            staleValueGuard.loadFailed(name);
+            return getObjectFromRedisAsync(name + STALE_SUFFIX).thenCompose(stale -> {
+                if (stale == null) {
+                    return CompletableFuture.failedFuture(error);
+                }
+                log.warn("加载缓存失败，返回旧值：{}", name, error);
+                return CompletableFuture.completedFuture(valueOf(stale));
+            });
+        }).thenCompose(future -> future);
+    }
+
+    private CompletableFuture<Object> writeLoadedValueAsync(ProceedingJoinPoint proceedingJoinPoint,
+                                                            CacheOperationMetadata<LockedCacheable> metadata,
+                                                            String name, String key, boolean bloomFilter, Object proceed,
+                                                            long delta, String version) {
+        log.debug("{}方法执行结束", proceedingJoinPoint.getSignature().getName());
+        if (proceed != null) {
+            String cacheName = metadata.getCacheName();
+            CompletableFuture<Void> bloomPut = bloomFilter
+                    ? bloomFilterGuard.putAsync(cacheName, key, metadata.getAnnotation().expectedInsertions(),
+                            metadata.getAnnotation().falseProbability())
+                    : CompletableFuture.completedFuture(null);
+            Duration ttl = metadata.getTtlPolicy().nextTtl();
+            byte[] rawValue = encodeValue(metadata, proceed, delta, ttl);
+            cacheMetrics.of(proceedingJoinPoint, metadata.getCacheName()).valueSize(rawValue.length);
+            if (version != null) {
+                boolean staleWhileError = metadata.getAnnotation().staleWhileError();
+                return bloomPut.thenCompose(v -> compareAndSetAsync(name, version, rawValue, ttl, staleWhileError))
+                        .thenApply(v -> proceed);
+            }
+            CompletableFuture<Void> write = bloomPut.thenCompose(v -> setRawToRedisAsync(name, rawValue, ttl));
+            if (metadata.getAnnotation().staleWhileError()) {
+                write = write.thenCompose(v -> setRawToRedisAsync(name + STALE_SUFFIX, rawValue,
+                        lockedCacheProperties.getStaleWhileError().getStaleTimeToLive()));
+            }
+            return write.thenApply(v -> proceed);
+        }
+        if (isCacheNullValues()) {
+            // 方法返回null时写入空值占位，防止缓存穿透
+            CompletableFuture<Void> write = version != null
+                    ? compareAndSetAsync(name, version, NULL_VALUE_BYTES, nullValueTtl(metadata.getDuration()), false)
+                    : setNullValueToRedisAsync(name, metadata.getDuration());
+            return write.thenApply(v -> NullValue.INSTANCE);
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * 版本模式下按读取时的版本号写回，版本号已变化说明期间有删除，放弃写回
+     */
+    private void compareAndSet(String name, String version, byte[] rawValue, Duration ttl, boolean staleWhileError) {
+        boolean written = cacheScripts.compareAndSet(name, version, rawValue, ttl,
+                staleWhileError ? name + STALE_SUFFIX : null,
+                lockedCacheProperties.getStaleWhileError().getStaleTimeToLive());
+        if (!written) {
+            log.debug("缓存在加载期间被删除，放弃写回：{}", name);
+        }
+    }
+
+    /**
+     * compareAndSet 的异步版本
+     */
+    private CompletableFuture<Void> compareAndSetAsync(String name, String version, byte[] rawValue, Duration ttl,
+                                                       boolean staleWhileError) {
+        return cacheScripts.compareAndSetAsync(name, version, rawValue, ttl,
+                        staleWhileError ? name + STALE_SUFFIX : null,
+                        lockedCacheProperties.getStaleWhileError().getStaleTimeToLive())
+                .thenAccept(written -> {
+                    if (!written) {
+                        log.debug("缓存在加载期间被删除，放弃写回：{}", name);
+                    }
+                });
+    }
+
+    /**
+     * JFR 事件中的读取结果
+     */
+    private static String outcomeOf(Object cached) {
+        if (cached == null) {
+            return "miss";
+        }
+        return cached instanceof NullValue ? "negative_hit" : "hit";
+    }
+
+    /**
+     * 执行方法并记录加载耗时，失败时同样记录
+     */
+    private static Object timedLoad(CacheMetrics.Meters meters, StaleValueGuard.Loader loader) throws Throwable {
+        long start = System.nanoTime();
+        try {
+            Object proceed = loader.load();
+            meters.load(System.nanoTime() - start, true);
             return proceed;
-        } else {
+        } catch (Throwable e) {
+            meters.load(System.nanoTime() - start, false);
+            throw e;
+        }
+    }
+
+    /**
+     * 读取redis缓存
+     * 缓存不存在时返回null，缓存的是空值占位时返回 NullValue.INSTANCE
+     */
+    private Object getObjectFromRedis(String name) {
+        return getObjectFromRedis(name, TtlPolicy.persistent());
+    }
+
+    /**
+     * 读取redis缓存，滑动过期时通过脚本使用 GETEX 在读取的同时刷新TTL
+     */
+    private Object getObjectFromRedis(String name, TtlPolicy ttlPolicy) {
+        return getObjectFromRedis(name, ttlPolicy, null);
+    }
+
+    /**
+     * 滑动过期时读取和刷新TTL是一次原子的脚本调用，空值占位不刷新，否则不存在的key一直被读取时占位永远不会过期
+     * @param event 不为null时记录redis往返和反序列化的耗时
+     */
+    private Object getObjectFromRedis(String name, TtlPolicy ttlPolicy, CacheInvocationEvent event) {
+        long start = System.nanoTime();
+        byte[] rawValue = ttlPolicy.isSliding()
+                ? cacheScripts.readSliding(name, ttlPolicy.nextTtl())
+                : redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.stringCommands().get(rawKey(name)));
+        long read = System.nanoTime();
+        if (event != null) {
+            event.addRedisRead(read - start);
+        }
+        if (rawValue == null) {
             return null;
         }
+        // 如果成功获取redis缓存，则直接返回缓存
+        log.debug("读取了以下redis缓存：{}", name);
+        Object cached = decodeValue(rawValue);
+        if (event != null) {
+            event.addDecode(System.nanoTime() - read);
+        }
+        return cached;
+    }
+
+    /**
+     * 解码redis中的value，长度为0时是空值占位，开启提前刷新时写入的数据返回 RefreshAheadEntry
+     */
+    private Object decodeValue(byte[] rawValue) {
+        if (rawValue.length == 0) {
+            return NullValue.INSTANCE;
+        }
+        // 读取时按value的格式标记解码，与写入时使用的编码格式无关
+        RedisSerializer<Object> serializer = cacheCodecRegistry.defaultSerializer();
+        if (RefreshAheadEntry.isWrapped(rawValue)) {
+            return RefreshAheadEntry.unwrap(rawValue, serializer::deserialize);
+        }
+        return serializer.deserialize(rawValue);
+    }
+
+    /**
+     * 按缓存配置的编码格式序列化value，开启提前刷新且有TTL时加上加载耗时和过期时间
+     */
+    private byte[] encodeValue(CacheOperationMetadata<LockedCacheable> metadata, Object value, long delta, Duration ttl) {
+        byte[] rawValue = cacheCodecRegistry.serializerFor(metadata.getCacheName()).serialize(value);
+        LockedCacheable annotation = metadata.getAnnotation();
+        if (annotation != null && annotation.refreshAhead() && ttl != null) {
+            return RefreshAheadEntry.wrap(rawValue, delta, System.currentTimeMillis() + ttl.toMillis());
+        }
+        return rawValue;
+    }
+
+    /**
+     * 读取旧值副本，不存在时返回null
+     */
+    private Object getStaleFromRedis(String name) {
+        return valueOf(getObjectFromRedis(name + STALE_SUFFIX));
+    }
+
+    /**
+     * 提前刷新的数据取出其中的value
+     */
+    private static Object valueOf(Object cached) {
+        return cached instanceof RefreshAheadEntry entry ? entry.getValue() : cached;
+    }
+
+    /**
+     * 写入 encodeValue 编码后的value，value和TTL在同一条命令中写入
+     */
+    private void setObjectToRedis(String name, byte[] rawValue, Duration duration) {
+        byte[] rawKey = rawKey(name);
+        Expiration expiration = duration != null ? Expiration.from(duration) : Expiration.persistent();
+        redisTemplate.execute((RedisCallback<Boolean>) connection ->
+                connection.stringCommands().set(rawKey, rawValue, expiration, RedisStringCommands.SetOption.upsert()));
+    }
+
+    /**
+     * 在一次pipeline中写入缓存和旧值副本
+     */
+    private void setObjectsToRedis(String name, byte[] rawValue, Duration duration, String staleName, Duration staleDuration) {
+        byte[] rawKey = rawKey(name);
+        byte[] rawStaleKey = rawKey(staleName);
+        Expiration expiration = duration != null ? Expiration.from(duration) : Expiration.persistent();
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.stringCommands().set(rawKey, rawValue, expiration, RedisStringCommands.SetOption.upsert());
+            connection.stringCommands().set(rawStaleKey, rawValue, Expiration.from(staleDuration),
+                    RedisStringCommands.SetOption.upsert());
+            return null;
+        });
+    }
+
+    /**
+     * 写入空值占位，使用长度为0的value，存活时间取空值TTL与缓存TTL中较小的一个
+     */
+    private void setNullValueToRedis(String name, Duration duration) {
+        Duration ttl = nullValueTtl(duration);
+        byte[] rawKey = rawKey(name);
+        Expiration expiration = Expiration.from(ttl);
+        redisTemplate.execute((RedisCallback<Boolean>) connection ->
+                connection.stringCommands().set(rawKey, NULL_VALUE_BYTES, expiration, RedisStringCommands.SetOption.upsert()));
+    }
+
+    private CompletableFuture<Object> getObjectFromRedisAsync(String name) {
+        return getObjectFromRedisAsync(name, TtlPolicy.persistent());
+    }
+
+    private CompletableFuture<Object> getObjectFromRedisAsync(String name, TtlPolicy ttlPolicy) {
+        // 与同步读取一致，滑动过期时读取和刷新TTL在同一个脚本中完成，空值占位不刷新TTL
+        CompletableFuture<byte[]> read = ttlPolicy.isSliding()
+                ? cacheScripts.readSlidingAsync(name, ttlPolicy.nextTtl())
+                : redissonClient.<byte[]>getBucket(name, ByteArrayCodec.INSTANCE).getAsync().toCompletableFuture();
+        return read.thenApply(rawValue -> {
+            if (rawValue == null) {
+                return null;
+            }
+            log.debug("读取了以下redis缓存：{}", name);
+            return decodeValue(rawValue);
+        });
+    }
+
+    private CompletableFuture<Void> setNullValueToRedisAsync(String name, Duration duration) {
+        return setRawToRedisAsync(name, NULL_VALUE_BYTES, nullValueTtl(duration));
+    }
+
+    /**
+     * 空值占位的存活时间，取空值TTL与缓存TTL中较小的一个
+     */
+    private Duration nullValueTtl(Duration duration) {
+        Duration ttl = lockedCacheProperties.getNullValueTimeToLive();
+        return duration != null && duration.compareTo(ttl) < 0 ? duration : ttl;
+    }
+
+    private CompletableFuture<Void> setRawToRedisAsync(String name, byte[] rawValue, Duration duration) {
+        RBucket<byte[]> bucket = redissonClient.getBucket(name, ByteArrayCodec.INSTANCE);
+        return (duration != null ? bucket.setAsync(rawValue, duration) : bucket.setAsync(rawValue)).toCompletableFuture();
+    }
+
+    private boolean isCacheNullValues() {
+        return cacheProperties == null || cacheProperties.getRedis().isCacheNullValues();
+    }
+
+    @SuppressWarnings("unchecked")
+    private byte[] rawKey(String name) {
+        return ((RedisSerializer<String>) redisTemplate.getKeySerializer()).serialize(name);
     }
 }
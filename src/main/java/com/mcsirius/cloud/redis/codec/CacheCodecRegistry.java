@@ -0,0 +1,146 @@
+package com.mcsirius.cloud.redis.codec;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.util.Assert;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 缓存编解码器的注册表，按缓存名选择写入格式
+ * 所有缓存读取时都能识别全部已注册的格式，切换格式后旧数据仍可读取
+ * 超过压缩阈值的value会被 LZ4 压缩，压缩统计按缓存名分别记录
+ */
+public class CacheCodecRegistry {
+
+    /**
+     * 未单独指定缓存名的写入（RedisTemplate 等）记录在该名称下；缓存名在 # 处截断，不会与之重复
+     */
+    public static final String DEFAULT_STATISTICS = "#default";
+
+    /**
+     * 0-15 为内置格式保留的标记，自定义编码器只能使用 16 以上的值
+     * 已使用：0 json（不写标记），1 smile，2 cbor，3 kryo，4 LZ4 压缩，5 提前刷新
+     */
+    public static final int RESERVED_MARKERS = 16;
+
+    /**
+     * 压缩数据的标记，见 CompressingRedisSerializer
+     */
+    public static final byte LZ4_MARKER = 4;
+
+    /**
+     * 提前刷新数据的标记，见 RefreshAheadEntry
+     */
+    public static final byte REFRESH_AHEAD_MARKER = 5;
+
+    /**
+     * 内置编码器使用的标记
+     */
+    private static final Set<Integer> BUILT_IN_MARKERS = Set.of((int) JacksonValueCodec.JSON_MARKER,
+            (int) JacksonValueCodec.SMILE_MARKER, (int) JacksonValueCodec.CBOR_MARKER, (int) KryoValueCodec.KRYO_MARKER);
+
+    private final Map<String, CodecRedisSerializer> serializers = new HashMap<>();
+
+    private final Map<String, String> cacheCodecs;
+
+    private final String defaultCodec;
+
+    private final int compressionThreshold;
+
+    private final RedisSerializer<Object> defaultSerializer;
+
+    private final Map<String, RedisSerializer<Object>> cacheSerializers = new ConcurrentHashMap<>();
+
+    private final Map<String, CompressionStatistics> compressionStatistics = new ConcurrentHashMap<>();
+
+    /**
+     * @param codecs 全部编解码器，需包含名为 json 的编解码器
+     * @param defaultCodec 默认的写入格式
+     * @param cacheCodecs 缓存名到写入格式的映射
+     * @param compressionThreshold 压缩阈值（字节），<=0 时只解压不压缩
+     */
+    public CacheCodecRegistry(List<ValueCodec> codecs, String defaultCodec, Map<String, String> cacheCodecs,
+                              int compressionThreshold) {
+        ValueCodec jsonCodec = null;
+        ValueCodec[] readCodecs = new ValueCodec[256];
+        for (ValueCodec codec : codecs) {
+            int marker = codec.marker() & 0xFF;
+            checkMarker(codec, marker);
+            Assert.state(readCodecs[marker] == null, () -> "重复的编码格式标记：" + marker);
+            readCodecs[marker] = codec;
+            if (marker == JacksonValueCodec.JSON_MARKER) {
+                jsonCodec = codec;
+            }
+        }
+        Assert.state(jsonCodec != null, "缺少json编解码器");
+        for (ValueCodec codec : codecs) {
+            serializers.put(codec.name(), new CodecRedisSerializer(codec, readCodecs, jsonCodec));
+        }
+        this.cacheCodecs = cacheCodecs;
+        this.defaultCodec = defaultCodec;
+        this.compressionThreshold = compressionThreshold;
+        this.defaultSerializer = compressing(DEFAULT_STATISTICS, getSerializer(defaultCodec));
+    }
+
+    /**
+     * 默认格式的 RedisSerializer，用于 RedisTemplate 以及未单独配置的缓存
+     */
+    public RedisSerializer<Object> defaultSerializer() {
+        return defaultSerializer;
+    }
+
+    /**
+     * 指定缓存使用的 RedisSerializer
+     * @param cacheName 缓存名（不含 #TTL 部分）
+     */
+    public RedisSerializer<Object> serializerFor(String cacheName) {
+        return cacheSerializers.computeIfAbsent(cacheName, name -> {
+            String codec = cacheCodecs.get(name);
+            return compressing(name, getSerializer(codec != null ? codec : defaultCodec));
+        });
+    }
+
+    /**
+     * 各缓存的压缩统计，key为缓存名
+     */
+    public Map<String, CompressionStatistics> getCompressionStatistics() {
+        return Collections.unmodifiableMap(compressionStatistics);
+    }
+
+    /**
+     * 保留的标记只能由内置编码器使用；自定义标记不能是json value可能的第一个字节，否则没有标记的json数据会被误认为该格式
+     */
+    private static void checkMarker(ValueCodec codec, int marker) {
+        if (codec instanceof JacksonValueCodec || codec instanceof KryoValueCodec) {
+            Assert.state(BUILT_IN_MARKERS.contains(marker), () -> "内置编码器 " + codec.name() + " 的标记不正确：" + marker);
+            return;
+        }
+        Assert.state(marker >= RESERVED_MARKERS,
+                () -> "编码格式标记 0-" + (RESERVED_MARKERS - 1) + " 为内置格式保留，" + codec.name() + " 使用了：" + marker);
+        Assert.state(!isJsonStart(marker), () -> "编码格式标记不能是json的起始字符，" + codec.name() + " 使用了：" + marker);
+    }
+
+    /**
+     * json value可能的第一个字节：对象、数组、字符串、数字以及 true/false/null
+     */
+    static boolean isJsonStart(int b) {
+        return b == '{' || b == '[' || b == '"' || b == '-' || (b >= '0' && b <= '9')
+                || b == 't' || b == 'f' || b == 'n' || b == ' ';
+    }
+
+    private RedisSerializer<Object> compressing(String name, CodecRedisSerializer serializer) {
+        CompressionStatistics statistics = compressionStatistics.computeIfAbsent(name, n -> new CompressionStatistics());
+        return new CompressingRedisSerializer(serializer, compressionThreshold, statistics);
+    }
+
+    private CodecRedisSerializer getSerializer(String codec) {
+        CodecRedisSerializer serializer = serializers.get(codec);
+        Assert.state(serializer != null, () -> "未知的缓存编码格式：" + codec);
+        return serializer;
+    }
+}
@@ -0,0 +1,60 @@
+package com.mcsirius.cloud.redis.codec;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+/**
+ * 按格式标记读写的 RedisSerializer
+ * 写入时使用指定的编码器，非json格式在value前加一个字节的格式标记；读取时按标记选择编码器，没有标记的按json读取，兼容旧数据
+ */
+public class CodecRedisSerializer implements RedisSerializer<Object> {
+
+    private static final byte[] EMPTY_ARRAY = new byte[0];
+
+    private final ValueCodec writeCodec;
+
+    private final ValueCodec[] readCodecs;
+
+    private final ValueCodec jsonCodec;
+
+    /**
+     * @param writeCodec 写入使用的编码器
+     * @param readCodecs 按格式标记索引的编码器
+     * @param jsonCodec 没有格式标记时使用的编码器
+     */
+    CodecRedisSerializer(ValueCodec writeCodec, ValueCodec[] readCodecs, ValueCodec jsonCodec) {
+        this.writeCodec = writeCodec;
+        this.readCodecs = readCodecs;
+        this.jsonCodec = jsonCodec;
+    }
+
+    public ValueCodec getWriteCodec() {
+        return writeCodec;
+    }
+
+    @Override
+    public byte[] serialize(Object value) {
+        if (value == null) {
+            return EMPTY_ARRAY;
+        }
+        byte[] payload = writeCodec.encode(value);
+        if (writeCodec.marker() == JacksonValueCodec.JSON_MARKER) {
+            return payload;
+        }
+        byte[] bytes = new byte[payload.length + 1];
+        bytes[0] = writeCodec.marker();
+        System.arraycopy(payload, 0, bytes, 1, payload.length);
+        return bytes;
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        int marker = bytes[0] & 0xFF;
+        if (marker > 0 && marker < readCodecs.length && readCodecs[marker] != null) {
+            return readCodecs[marker].decode(bytes, 1);
+        }
+        return jsonCodec.decode(bytes, 0);
+    }
+}
@@ -0,0 +1,83 @@
+package com.mcsirius.cloud.redis.codec;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+/**
+ * 压缩大value的 RedisSerializer 装饰器
+ * 序列化后超过阈值的value使用 LZ4 压缩，格式为：标记(1字节) + 原始长度(4字节) + 压缩数据
+ * 未压缩的value保持原样，读取时按标记判断是否需要解压
+ */
+public class CompressingRedisSerializer implements RedisSerializer<Object> {
+
+    /**
+     * 压缩标记，在 CacheCodecRegistry 的保留标记中登记
+     */
+    public static final byte LZ4_MARKER = CacheCodecRegistry.LZ4_MARKER;
+
+    private static final int HEADER_LENGTH = 5;
+
+    private static final LZ4Factory LZ4_FACTORY = LZ4Factory.fastestInstance();
+
+    private final RedisSerializer<Object> delegate;
+
+    private final int threshold;
+
+    private final CompressionStatistics statistics;
+
+    private final LZ4Compressor compressor = LZ4_FACTORY.fastCompressor();
+
+    private final LZ4FastDecompressor decompressor = LZ4_FACTORY.fastDecompressor();
+
+    /**
+     * @param delegate 实际的序列化器
+     * @param threshold 压缩阈值（字节），<=0 时不压缩
+     * @param statistics 压缩统计
+     */
+    public CompressingRedisSerializer(RedisSerializer<Object> delegate, int threshold, CompressionStatistics statistics) {
+        this.delegate = delegate;
+        this.threshold = threshold;
+        this.statistics = statistics;
+    }
+
+    @Override
+    public byte[] serialize(Object value) {
+        byte[] bytes = delegate.serialize(value);
+        if (bytes == null || threshold <= 0 || bytes.length < threshold) {
+            if (bytes != null && bytes.length > 0) {
+                statistics.record(bytes.length, bytes.length, false);
+            }
+            return bytes;
+        }
+        int maxLength = compressor.maxCompressedLength(bytes.length);
+        byte[] compressed = new byte[HEADER_LENGTH + maxLength];
+        int length = compressor.compress(bytes, 0, bytes.length, compressed, HEADER_LENGTH, maxLength);
+        if (HEADER_LENGTH + length >= bytes.length) {
+            // 压缩后没有变小，保存原始数据
+            statistics.record(bytes.length, bytes.length, false);
+            return bytes;
+        }
+        compressed[0] = LZ4_MARKER;
+        compressed[1] = (byte) (bytes.length >>> 24);
+        compressed[2] = (byte) (bytes.length >>> 16);
+        compressed[3] = (byte) (bytes.length >>> 8);
+        compressed[4] = (byte) bytes.length;
+        byte[] result = new byte[HEADER_LENGTH + length];
+        System.arraycopy(compressed, 0, result, 0, result.length);
+        statistics.record(bytes.length, result.length, true);
+        return result;
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) {
+        if (bytes == null || bytes.length <= HEADER_LENGTH || bytes[0] != LZ4_MARKER) {
+            return delegate.deserialize(bytes);
+        }
+        int length = ((bytes[1] & 0xFF) << 24) | ((bytes[2] & 0xFF) << 16) | ((bytes[3] & 0xFF) << 8) | (bytes[4] & 0xFF);
+        byte[] original = new byte[length];
+        decompressor.decompress(bytes, HEADER_LENGTH, original, 0, length);
+        return delegate.deserialize(original);
+    }
+}
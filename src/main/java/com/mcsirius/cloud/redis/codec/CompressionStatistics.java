@@ -0,0 +1,68 @@
+package com.mcsirius.cloud.redis.codec;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个缓存的压缩统计，用于调整压缩阈值
+ */
+public class CompressionStatistics {
+
+    private final LongAdder values = new LongAdder();
+
+    private final LongAdder compressedValues = new LongAdder();
+
+    private final LongAdder originalBytes = new LongAdder();
+
+    private final LongAdder compressedBytes = new LongAdder();
+
+    void record(int originalLength, int storedLength, boolean compressed) {
+        values.increment();
+        if (compressed) {
+            compressedValues.increment();
+            originalBytes.add(originalLength);
+            compressedBytes.add(storedLength);
+        }
+    }
+
+    /**
+     * 写入的value总数
+     */
+    public long getValues() {
+        return values.sum();
+    }
+
+    /**
+     * 被压缩的value数量
+     */
+    public long getCompressedValues() {
+        return compressedValues.sum();
+    }
+
+    /**
+     * 被压缩的value压缩前的总字节数
+     */
+    public long getOriginalBytes() {
+        return originalBytes.sum();
+    }
+
+    /**
+     * 被压缩的value压缩后的总字节数
+     */
+    public long getCompressedBytes() {
+        return compressedBytes.sum();
+    }
+
+    /**
+     * 压缩率（压缩后/压缩前），没有压缩过时返回1
+     */
+    public double getCompressionRatio() {
+        long original = getOriginalBytes();
+        return original == 0 ? 1.0 : (double) getCompressedBytes() / original;
+    }
+
+    @Override
+    public String toString() {
+        return "CompressionStatistics{values=" + getValues() + ", compressedValues=" + getCompressedValues()
+                + ", compressionRatio=" + getCompressionRatio() + "}";
+    }
+}
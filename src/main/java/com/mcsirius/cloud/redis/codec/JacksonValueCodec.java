@@ -0,0 +1,90 @@
+package com.mcsirius.cloud.redis.codec;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.IOException;
+
+/**
+ * 基于 jackson 的编解码，支持 json 以及二进制的 smile、cbor 格式
+ * 类型信息的处理方式与 RedisConfig 中的 jackson2JsonRedisSerializer 一致
+ */
+public class JacksonValueCodec implements ValueCodec {
+
+    public static final byte JSON_MARKER = 0;
+
+    public static final byte SMILE_MARKER = 1;
+
+    public static final byte CBOR_MARKER = 2;
+
+    private final String name;
+
+    private final byte marker;
+
+    private final ObjectMapper objectMapper;
+
+    public JacksonValueCodec(String name, byte marker, ObjectMapper objectMapper) {
+        this.name = name;
+        this.marker = marker;
+        this.objectMapper = objectMapper;
+    }
+
+    public static JacksonValueCodec json() {
+        return new JacksonValueCodec("json", JSON_MARKER, createObjectMapper(null));
+    }
+
+    public static JacksonValueCodec smile() {
+        return new JacksonValueCodec("smile", SMILE_MARKER, createObjectMapper(new SmileFactory()));
+    }
+
+    public static JacksonValueCodec cbor() {
+        return new JacksonValueCodec("cbor", CBOR_MARKER, createObjectMapper(new CBORFactory()));
+    }
+
+    /**
+     * 创建缓存使用的 ObjectMapper
+     * @param jsonFactory 为null时使用json格式
+     */
+    public static ObjectMapper createObjectMapper(JsonFactory jsonFactory) {
+        //解决查询缓存转换异常的问题
+        ObjectMapper om = jsonFactory != null ? new ObjectMapper(jsonFactory) : new ObjectMapper();
+        om.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
+        om.activateDefaultTyping(LaissezFaireSubTypeValidator.instance, ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.WRAPPER_ARRAY);
+        return om;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public byte marker() {
+        return marker;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new SerializationException("Could not write " + name + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Object decode(byte[] bytes, int offset) {
+        try {
+            return objectMapper.readValue(bytes, offset, bytes.length - offset, Object.class);
+        } catch (IOException e) {
+            throw new SerializationException("Could not read " + name + ": " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.mcsirius.cloud.redis.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.redisson.client.handler.State;
+import org.redisson.codec.Kryo5Codec;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.IOException;
+
+/**
+ * 基于 redisson Kryo5Codec 的二进制编解码，体积最小、速度最快，但缓存的类结构变化后无法兼容旧数据
+ */
+public class KryoValueCodec implements ValueCodec {
+
+    public static final byte KRYO_MARKER = 3;
+
+    private final Kryo5Codec codec = new Kryo5Codec();
+
+    @Override
+    public String name() {
+        return "kryo";
+    }
+
+    @Override
+    public byte marker() {
+        return KRYO_MARKER;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        ByteBuf buf = null;
+        try {
+            buf = codec.getValueEncoder().encode(value);
+            return ByteBufUtil.getBytes(buf);
+        } catch (IOException e) {
+            throw new SerializationException("Could not write kryo: " + e.getMessage(), e);
+        } finally {
+            if (buf != null) {
+                buf.release();
+            }
+        }
+    }
+
+    @Override
+    public Object decode(byte[] bytes, int offset) {
+        try {
+            return codec.getValueDecoder().decode(Unpooled.wrappedBuffer(bytes, offset, bytes.length - offset), new State());
+        } catch (IOException e) {
+            throw new SerializationException("Could not read kryo: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.mcsirius.cloud.redis.codec;
+
+/**
+ * 缓存value的编解码扩展点
+ * 实现类注册为 spring bean 后即可在 locked-cache.codec 中按名称选用
+ */
+public interface ValueCodec {
+
+    /**
+     * 编码器名称，对应配置文件中的值，如 json、smile
+     */
+    String name();
+
+    /**
+     * 写在value第一个字节的格式标记，用于读取时识别编码格式
+     * 0 表示不写标记（json），0-15 为内置格式和压缩等保留，自定义编码器必须使用 16 以上的值
+     * 没有标记的json数据按第一个字节识别，因此标记也不能是json的起始字符（{ [ " - 数字 t f n 空格），否则启动时报错
+     */
+    byte marker();
+
+    byte[] encode(Object value);
+
+    /**
+     * 解码，offset 之前的字节是格式标记
+     */
+    Object decode(byte[] bytes, int offset);
+}
@@ -0,0 +1,488 @@
+package com.mcsirius.cloud.redis.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 自定义缓存注解（LockedCacheable 等）的配置项
+ * 对应 application.yml 中的 locked-cache 前缀
+ */
+@Data
+@ConfigurationProperties(prefix = "locked-cache")
+public class LockedCacheProperties {
+
+    /**
+     * 本地一级缓存配置
+     */
+    private Local local = new Local();
+
+    /**
+     * 过期策略配置，TTCacheManager 和缓存注解共用
+     */
+    private Ttl ttl = new Ttl();
+
+    /**
+     * 空值缓存的存活时间，仅在 spring.cache.redis.cache-null-values 开启时生效
+     */
+    private Duration nullValueTimeToLive = Duration.ofMinutes(1);
+
+    /**
+     * 等待读锁和 sync 锁的配置
+     */
+    private Lock lock = new Lock();
+
+    /**
+     * 提前刷新的后台线程池配置
+     */
+    private RefreshAhead refreshAhead = new RefreshAhead();
+
+    /**
+     * 异步缓存方法使用的线程池配置
+     */
+    private Async async = new Async();
+
+    /**
+     * 加载失败时返回旧值的配置
+     */
+    private StaleWhileError staleWhileError = new StaleWhileError();
+
+    /**
+     * lua脚本配置
+     */
+    private Script script = new Script();
+
+    /**
+     * JFR 事件配置
+     */
+    private Jfr jfr = new Jfr();
+
+    /**
+     * Spring @Cacheable 默认key的生成配置
+     */
+    private Key key = new Key();
+
+    /**
+     * 缓存与数据一致性的保证方式
+     */
+    private Consistency consistency = new Consistency();
+
+    /**
+     * 热点key检测配置
+     */
+    private HotKey hotKey = new HotKey();
+
+    /**
+     * 启动预热配置
+     */
+    private WarmUp warmUp = new WarmUp();
+
+    /**
+     * 布隆过滤器配置
+     */
+    private Bloom bloom = new Bloom();
+
+    /**
+     * 删除缓存时的扫描配置
+     */
+    private Evict evict = new Evict();
+
+    /**
+     * 延迟双删配置
+     */
+    private DelayedEvict delayedEvict = new DelayedEvict();
+
+    /**
+     * 缓存value的编码格式配置
+     */
+    private Codec codec = new Codec();
+
+    /**
+     * 大value的压缩配置
+     */
+    private Compression compression = new Compression();
+
+    /**
+     * TTCacheManager 大value的本地磁盘缓存配置
+     */
+    private DiskTier diskTier = new DiskTier();
+
+    @Data
+    public static class Local {
+        /**
+         * 本地缓存的最大条目数，超出后按 LRU 淘汰
+         */
+        private int maximumSize = 10000;
+
+        /**
+         * 本地缓存的存活时间，不会超过 redis 中的 TTL
+         */
+        private Duration timeToLive = Duration.ofSeconds(30);
+
+        /**
+         * 跨实例失效通知使用的 redis 频道
+         */
+        private String invalidationTopic = "locked-cache:invalidation";
+    }
+
+    @Data
+    public static class Bloom {
+        /**
+         * 预计元素数量，注解上未指定时使用
+         */
+        private long expectedInsertions = 1000000;
+
+        /**
+         * 误判率，注解上未指定时使用
+         */
+        private double falseProbability = 0.01;
+    }
+
+    @Data
+    public static class Evict {
+        /**
+         * SCAN 命令每次遍历的数量（COUNT 参数）
+         */
+        private int scanCount = 1000;
+
+        /**
+         * 每批 UNLINK 的key数量，同一时间最多只在内存中保留一批key
+         */
+        private int batchSize = 500;
+    }
+
+    @Data
+    public static class DelayedEvict {
+        /**
+         * 检查到期删除任务的间隔
+         */
+        private Duration tickInterval = Duration.ofMillis(100);
+
+        /**
+         * 是否使用 redisson 延迟队列保存待删除的key，开启后实例重启不会丢失第二次删除
+         */
+        private boolean durable = false;
+
+        /**
+         * 延迟队列的名称
+         */
+        private String queueName = "locked-cache:delayed-evict";
+    }
+
+    @Data
+    public static class Codec {
+        /**
+         * 默认的编码格式：json、smile、cbor、kryo 或自定义 ValueCodec 的名称
+         */
+        private String defaultCodec = "json";
+
+        /**
+         * 按缓存名（不含 #TTL 部分）单独指定编码格式
+         */
+        private Map<String, String> caches = new HashMap<>();
+    }
+
+    @Data
+    public static class Compression {
+        /**
+         * 是否压缩大value，关闭后仍能读取已压缩的数据
+         */
+        private boolean enabled = false;
+
+        /**
+         * 序列化后超过该字节数的value使用 LZ4 压缩
+         */
+        private int threshold = 4096;
+    }
+
+    @Data
+    public static class DiskTier {
+        /**
+         * 是否在本地内存映射文件中保存 TTCacheManager 缓存的大value，过期时间与redis中的key一致
+         */
+        private boolean enabled = false;
+
+        /**
+         * 保存段文件的根目录，每个实例使用其中以实例id命名的子目录，停止时删除
+         */
+        private String directory = Path.of(System.getProperty("java.io.tmpdir"), "locked-cache-disk").toString();
+
+        /**
+         * 使用磁盘缓存的缓存名，为空时所有缓存都使用
+         */
+        private Set<String> caches = new HashSet<>();
+
+        /**
+         * 序列化后达到该大小的value才保存到磁盘
+         */
+        private DataSize minimumSize = DataSize.ofKilobytes(64);
+
+        /**
+         * 每个段文件的大小，超过段大小的value不保存
+         */
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+        /**
+         * 磁盘缓存的总大小，写满后整段回收最旧的数据
+         */
+        private DataSize maximumSize = DataSize.ofGigabytes(1);
+
+        /**
+         * 最多保存的条目数，决定堆外索引的大小
+         */
+        private int maximumEntries = 65536;
+
+        /**
+         * 修改和删除缓存时通知其他实例失效磁盘缓存的redis频道
+         */
+        private String invalidationTopic = "locked-cache:disk-invalidation";
+    }
+
+    @Data
+    public static class Lock {
+        /**
+         * 等待锁的最长时间，超时后抛出异常
+         */
+        private Duration waitTimeout = Duration.ofSeconds(30);
+
+        /**
+         * 第一轮等待时间，之后每轮翻倍
+         */
+        private Duration initialBackoff = Duration.ofMillis(50);
+
+        /**
+         * 每轮等待时间的上限
+         */
+        private Duration maxBackoff = Duration.ofSeconds(1);
+    }
+
+    @Data
+    public static class RefreshAhead {
+        /**
+         * 执行提前刷新的线程数
+         */
+        private int threads = 2;
+
+        /**
+         * 等待执行的刷新任务上限，超出时放弃刷新
+         */
+        private int queueCapacity = 1000;
+    }
+
+    @Data
+    public static class Async {
+        /**
+         * 异步方法中调用目标方法和执行阻塞操作（如 SCAN 删除）的线程数
+         */
+        private int threads = 8;
+
+        /**
+         * 等待执行的任务上限，超出时对应的调用以 RejectedExecutionException 失败
+         */
+        private int queueCapacity = 1000;
+    }
+
+    @Data
+    public static class StaleWhileError {
+        /**
+         * 旧值副本的存活时间，应大于缓存本身的TTL
+         */
+        private Duration staleTimeToLive = Duration.ofHours(1);
+
+        /**
+         * 加载超时时间，超时后返回旧值，为0时不限制
+         */
+        private Duration loadTimeout = Duration.ZERO;
+
+        /**
+         * 设置了加载超时时间时，同时执行加载的最大线程数，超出时直接返回旧值
+         */
+        private int loadThreads = 32;
+
+        /**
+         * 加载失败后的重试间隔，间隔内直接返回旧值，不再调用后端
+         */
+        private Duration retryInterval = Duration.ofSeconds(5);
+
+        /**
+         * 记录加载失败的key的最大数量
+         */
+        private int maximumFailures = 10000;
+    }
+
+    @Data
+    public static class Ttl {
+        /**
+         * TTL随机抖动的百分比，TTL在 ±jitterPercent% 范围内浮动，避免同一批key同时过期
+         */
+        private int jitterPercent = 0;
+
+        /**
+         * 是否滑动过期，读取时使用 GETEX 刷新TTL
+         */
+        private boolean sliding = false;
+
+        /**
+         * TTL下限
+         */
+        private Duration min;
+
+        /**
+         * TTL上限
+         */
+        private Duration max;
+
+        /**
+         * 按缓存名（不含 #TTL 部分）单独配置，未配置的项使用上面的默认值
+         */
+        private Map<String, CacheTtl> caches = new HashMap<>();
+    }
+
+    @Data
+    public static class CacheTtl {
+        /**
+         * 缓存的TTL，缓存名中的 #TTL 优先
+         */
+        private Duration timeToLive;
+
+        private Integer jitterPercent;
+
+        private Boolean sliding;
+
+        private Duration min;
+
+        private Duration max;
+    }
+
+    @Data
+    public static class Script {
+        /**
+         * 是否使用lua脚本合并缓存的读取和写入，集群模式下需要同时开启 key.hash-tag，使缓存key与锁在同一个slot中
+         */
+        private boolean enabled = false;
+    }
+
+    @Data
+    public static class Jfr {
+        /**
+         * 是否为缓存注解的调用创建 JFR 事件，只有 JFR 正在录制时才会写入
+         */
+        private boolean enabled = true;
+
+        /**
+         * 总耗时超过该值的调用才会提交事件
+         */
+        private Duration threshold = Duration.ofMillis(20);
+    }
+
+    @Data
+    public static class Key {
+        /**
+         * 参数部分超过该长度时替换为128位哈希，<=0 时不哈希
+         */
+        private int hashThreshold = 128;
+
+        /**
+         * 是否把逻辑key放在 {} 中，使值和锁在 redis cluster 的同一个slot，TTCacheManager 的key同样生效
+         * 开启后key的格式改变，已有的缓存不会再被读取
+         */
+        private boolean hashTag = false;
+    }
+
+    @Data
+    public static class HotKey {
+        /**
+         * 是否检测热点key，热点key在本地缓存中保留一个短时间的副本
+         */
+        private boolean enabled = false;
+
+        /**
+         * 统计访问次数的滑动窗口
+         */
+        private Duration window = Duration.ofSeconds(10);
+
+        /**
+         * 窗口内访问次数超过该值的key判定为热点
+         */
+        private int threshold = 1000;
+
+        /**
+         * 每行计数器的数量，向上取2的幂，越大误判越少
+         */
+        private int width = 4096;
+
+        /**
+         * 热点key本地副本的存活时间，也是删除缓存后其他实例可能读到旧值的最长时间
+         */
+        private Duration replicaTimeToLive = Duration.ofSeconds(1);
+
+        /**
+         * 最多记录的热点key数量
+         */
+        private int maximumReported = 100;
+    }
+
+    @Data
+    public static class WarmUp {
+        /**
+         * 是否在启动时执行 CacheWarmUp 预热
+         */
+        private boolean enabled = true;
+
+        /**
+         * 同时执行的预热批次数
+         */
+        private int parallelism = 4;
+
+        /**
+         * 每批加载和写入的key数量
+         */
+        private int batchSize = 100;
+
+        /**
+         * 启动时等待预热的最长时间，超时后不再提交新的批次，已提交的批次在后台执行完
+         */
+        private Duration timeout = Duration.ofMinutes(1);
+
+        /**
+         * 停机时保存热点key的文件，下次启动优先预热这些key，为空时不保存；需要开启热点key检测
+         */
+        private String hotKeySnapshot;
+    }
+
+    @Data
+    public static class Consistency {
+        /**
+         * lock：读取加读锁、删除加写锁；version：读取不加锁，删除前后各把版本号加一，加载结果按版本号比较后写回
+         * 两种模式不能在同时运行的实例之间混用
+         */
+        private ConsistencyMode mode = ConsistencyMode.LOCK;
+
+        /**
+         * 版本模式下删除正在进行时，读取直接返回当前值而不是等待删除完成
+         */
+        private boolean staleReads = false;
+
+        /**
+         * 版本模式下删除方法的最长执行时间，超过后（如实例崩溃）版本号过期，读取不再等待
+         */
+        private Duration writeTimeout = Duration.ofSeconds(30);
+
+        /**
+         * 版本模式下删除完成后版本号的存活时间，应大于加载方法的最长执行时间
+         */
+        private Duration versionTimeToLive = Duration.ofHours(1);
+    }
+
+    public enum ConsistencyMode {
+        LOCK,
+        VERSION
+    }
+}
@@ -1,12 +1,19 @@
 package com.mcsirius.cloud.redis.config;
 
 import org.springframework.data.redis.cache.TTCacheManager;
-import com.fasterxml.jackson.annotation.JsonAutoDetect;
-import com.fasterxml.jackson.annotation.JsonTypeInfo;
-import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
+import com.mcsirius.cloud.redis.codec.CacheCodecRegistry;
+import com.mcsirius.cloud.redis.codec.JacksonValueCodec;
+import com.mcsirius.cloud.redis.codec.KryoValueCodec;
+import com.mcsirius.cloud.redis.codec.ValueCodec;
+import com.mcsirius.cloud.redis.support.CacheKeyGenerator;
+import com.mcsirius.cloud.redis.support.CacheMetrics;
+import com.mcsirius.cloud.redis.support.CacheWarmUp;
+import com.mcsirius.cloud.redis.support.CacheAsyncExecutor;
+import com.mcsirius.cloud.redis.support.MappedDiskTier;
+import com.mcsirius.cloud.redis.support.TtlPolicyResolver;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.cache.CacheProperties;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cache.CacheManager;
@@ -21,26 +28,24 @@ import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
 @Configuration
 @EnableCaching
 @Slf4j
-@EnableConfigurationProperties(CacheProperties.class)
+@EnableConfigurationProperties({CacheProperties.class, LockedCacheProperties.class})
 public class RedisConfig {
     /**
      * 自定义key规则
+     * @param lockedCacheProperties
      * @return
      */
     @Bean
-    public KeyGenerator keyGenerator() {
-        return (target, method, params) -> {
-            StringBuilder sb = new StringBuilder();
-            sb.append(target.getClass().getName());
-            sb.append(method.getName());
-            for (Object obj : params) {
-                sb.append(obj.toString());
-            }
-            return sb.toString();
-        };
+    public KeyGenerator keyGenerator(LockedCacheProperties lockedCacheProperties) {
+        return new CacheKeyGenerator(lockedCacheProperties.getKey().getHashThreshold());
     }
 
     /**
@@ -49,7 +54,7 @@ public class RedisConfig {
      * @return
      */
     @Bean(name = "redisTemplate")
-    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory redisConnectionFactory) {
+    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory redisConnectionFactory, CacheCodecRegistry cacheCodecRegistry) {
         RedisTemplate<String, Object> template = new RedisTemplate<>();
         template.setConnectionFactory(redisConnectionFactory);
 
@@ -58,10 +63,10 @@ public class RedisConfig {
         template.setKeySerializer(stringRedisSerializer);
         // hash的key也采用String的序列化方式
         template.setHashKeySerializer(stringRedisSerializer);
-        // value序列化方式采用jackson
-        template.setValueSerializer(jackson2JsonRedisSerializer());
-        // hash的value序列化方式采用jackson
-        template.setHashValueSerializer(jackson2JsonRedisSerializer());
+        // value序列化方式采用默认的编码格式，可以读取所有格式
+        template.setValueSerializer(cacheCodecRegistry.defaultSerializer());
+        // hash的value序列化方式采用默认的编码格式
+        template.setHashValueSerializer(cacheCodecRegistry.defaultSerializer());
         template.afterPropertiesSet();
         return template;
     }
@@ -74,18 +79,36 @@ public class RedisConfig {
      * @return
      */
     @Bean(name = "redisCacheManager")
-    public CacheManager redisCacheManager(RedisConnectionFactory redisConnectionFactory, CacheProperties cacheProperties) {
+    public CacheManager redisCacheManager(RedisConnectionFactory redisConnectionFactory, CacheProperties cacheProperties,
+                                          CacheCodecRegistry cacheCodecRegistry, TtlPolicyResolver ttlPolicyResolver,
+                                          CacheMetrics cacheMetrics, LockedCacheProperties lockedCacheProperties,
+                                          ObjectProvider<CacheWarmUp> warmUps, MappedDiskTier mappedDiskTier,
+                                          CacheAsyncExecutor cacheAsyncExecutor) {
         return TTCacheManager.builder(redisConnectionFactory)
-                .cacheDefaults(redisCacheConfiguration(cacheProperties))
+                .cacheDefaults(redisCacheConfiguration(cacheProperties, cacheCodecRegistry))
+                //按缓存名选择value的编码格式
+                .serializeValuesWith(cacheName -> RedisSerializationContext.SerializationPair.fromSerializer(
+                        cacheCodecRegistry.serializerFor(cacheName)))
+                //与缓存注解共用过期策略：抖动、滑动过期、上下限以及按缓存名配置的TTL
+                .ttlPolicies(ttlPolicyResolver)
+                //开启统计并注册为 Micrometer 指标
+                .cacheMetrics(cacheMetrics)
+                //与缓存注解使用同样的key布局，开启后key放在 {} 中
+                .hashTagKeys(lockedCacheProperties.getKey().isHashTag())
+                //有预热数据的缓存在启动时创建，不等第一次访问
+                .initialCacheNames(warmUps.orderedStream().map(CacheWarmUp::cacheName)
+                        .collect(Collectors.toCollection(LinkedHashSet::new)))
+                //大value在本地内存映射文件中保留一份，过期时间与redis一致
+                .diskTier(lockedCacheProperties.getDiskTier().isEnabled() ? mappedDiskTier : null, cacheAsyncExecutor)
                 .build();
     }
 
     @Bean(name = "redisCacheConfiguration")
-    public RedisCacheConfiguration redisCacheConfiguration(CacheProperties cacheProperties){
+    public RedisCacheConfiguration redisCacheConfiguration(CacheProperties cacheProperties, CacheCodecRegistry cacheCodecRegistry){
         //在默认配置上修改，也可以new一个。指定序列化方式！
         RedisCacheConfiguration config = RedisCacheConfiguration.defaultCacheConfig().
                 serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer())).
-                serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(jackson2JsonRedisSerializer()));
+                serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(cacheCodecRegistry.defaultSerializer()));
 
         //从容器中取得redisProperties并进行判断，不然在application.yml配置的文件无效。
         // 因为只有默认的RedisCacheConfiguration才会走下面的内容，自定义的需要cv大法后改造一下
@@ -111,10 +134,29 @@ public class RedisConfig {
     @Bean(name = "jackson2JsonRedisSerializer")
     public Jackson2JsonRedisSerializer<Object> jackson2JsonRedisSerializer(){
         //解决查询缓存转换异常的问题
-        ObjectMapper om = new ObjectMapper();
-        om.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
-        om.activateDefaultTyping(LaissezFaireSubTypeValidator.instance, ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.WRAPPER_ARRAY);
+        ObjectMapper om = JacksonValueCodec.createObjectMapper(null);
         return new Jackson2JsonRedisSerializer<>(om, Object.class);
     }
+
+    /**
+     * 缓存value的编解码器，内置 json、smile、cbor、kryo，容器中的 ValueCodec 也会被注册
+     * @param lockedCacheProperties
+     * @param customCodecs
+     * @return
+     */
+    @Bean(name = "cacheCodecRegistry")
+    public CacheCodecRegistry cacheCodecRegistry(LockedCacheProperties lockedCacheProperties, ObjectProvider<ValueCodec> customCodecs) {
+        List<ValueCodec> codecs = new ArrayList<>();
+        codecs.add(JacksonValueCodec.json());
+        codecs.add(JacksonValueCodec.smile());
+        codecs.add(JacksonValueCodec.cbor());
+        codecs.add(new KryoValueCodec());
+        customCodecs.orderedStream().forEach(codecs::add);
+        LockedCacheProperties.Codec codec = lockedCacheProperties.getCodec();
+        LockedCacheProperties.Compression compression = lockedCacheProperties.getCompression();
+        // 关闭压缩时仍包装一层，保证已压缩的旧数据可以读取
+        int threshold = compression.isEnabled() ? compression.getThreshold() : 0;
+        return new CacheCodecRegistry(codecs, codec.getDefaultCodec(), codec.getCaches(), threshold);
+    }
 }
 
@@ -0,0 +1,54 @@
+package com.mcsirius.cloud.redis.support;
+
+import org.redisson.api.RLock;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 异步流程中使用的 redisson 锁操作
+ * 异步流程会在不同线程上继续执行，因此不能使用线程id，每次加锁使用单独生成的锁id
+ */
+public final class AsyncLocks {
+
+    private AsyncLocks() {
+    }
+
+    /**
+     * 生成一次加锁使用的锁id，加锁和解锁必须使用同一个id
+     */
+    public static long newLockId() {
+        return ThreadLocalRandom.current().nextLong();
+    }
+
+    /**
+     * 获取锁，锁释放时 redisson 通过 pub/sub 唤醒等待者，等待期间不占用线程
+     * 每轮等待时间由 backoff 决定，超时后返回失败的 future
+     */
+    public static CompletableFuture<Void> acquire(RLock lock, long lockId, LockBackoff backoff) {
+        long wait = backoff.nextWait();
+        if (wait < 0) {
+            return CompletableFuture.failedFuture(new IllegalStateException("等待锁超时：" + lock.getName()));
+        }
+        return lock.tryLockAsync(wait, -1, TimeUnit.MILLISECONDS, lockId).toCompletableFuture().thenCompose(locked ->
+                locked ? CompletableFuture.completedFuture(null) : acquire(lock, lockId, backoff));
+    }
+
+    /**
+     * 在future完成（包括失败）后释放锁，返回的future在锁释放后才完成，结果与原future相同
+     */
+    public static <T> CompletableFuture<T> releaseAfter(CompletableFuture<T> future, RLock lock, long lockId) {
+        return future.handle((value, error) -> lock.unlockAsync(lockId).toCompletableFuture()
+                        .handle((ignored, unlockError) -> {
+                            if (error != null) {
+                                throw error instanceof CompletionException completionException
+                                        ? completionException : new CompletionException(error);
+                            }
+                            return value;
+                        }))
+                .thenCompose(Function.identity());
+    }
+}
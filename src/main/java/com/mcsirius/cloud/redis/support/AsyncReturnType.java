@@ -0,0 +1,76 @@
+package com.mcsirius.cloud.redis.support;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.springframework.util.ClassUtils;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
+
+/**
+ * 缓存方法的异步返回类型
+ * 返回 CompletableFuture / CompletionStage / Mono 的方法走异步流程，不阻塞调用线程
+ */
+public enum AsyncReturnType {
+
+    /**
+     * 同步方法
+     */
+    NONE,
+
+    /**
+     * 声明返回 CompletableFuture 或 CompletionStage
+     */
+    COMPLETION_STAGE,
+
+    /**
+     * 声明返回 Mono，订阅时才执行缓存流程
+     */
+    MONO;
+
+    private static final boolean REACTOR_PRESENT =
+            ClassUtils.isPresent("reactor.core.publisher.Mono", AsyncReturnType.class.getClassLoader());
+
+    public static AsyncReturnType of(Class<?> returnType) {
+        if (CompletionStage.class.isAssignableFrom(returnType) && returnType.isAssignableFrom(CompletableFuture.class)) {
+            return COMPLETION_STAGE;
+        }
+        if (REACTOR_PRESENT && returnType == Mono.class) {
+            return MONO;
+        }
+        return NONE;
+    }
+
+    /**
+     * 执行目标方法并把返回值转换为 CompletableFuture，方法直接抛出的异常也转换为失败的 future
+     * Mono 为空时结果为null
+     */
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<Object> proceed(ProceedingJoinPoint proceedingJoinPoint) {
+        Object result;
+        try {
+            result = proceedingJoinPoint.proceed();
+        } catch (Throwable e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (result == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (this == MONO) {
+            return ((Mono<Object>) result).toFuture();
+        }
+        return ((CompletionStage<Object>) result).toCompletableFuture();
+    }
+
+    /**
+     * 把缓存流程的 future 转换回方法声明的返回类型
+     */
+    public Object adapt(Supplier<CompletableFuture<Object>> flow) {
+        if (this == MONO) {
+            // 取消订阅不取消缓存流程，保证锁能正常释放
+            return Mono.fromFuture(flow, true);
+        }
+        return flow.get();
+    }
+}
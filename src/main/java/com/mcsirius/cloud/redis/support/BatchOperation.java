@@ -0,0 +1,95 @@
+package com.mcsirius.cloud.redis.support;
+
+import com.mcsirius.cloud.redis.utils.SpelUtil;
+import lombok.Getter;
+import org.springframework.expression.Expression;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 批量模式的元数据：集合参数中的每个元素单独缓存，只用缺失的元素调用方法
+ * 方法返回 Map 时按Map的key对应元素，返回集合时用 resultKey 表达式从每个结果中取出对应的元素
+ */
+@Getter
+public class BatchOperation {
+
+    /**
+     * 集合参数的下标
+     */
+    private final int parameterIndex;
+
+    /**
+     * 集合参数是否为 Set
+     */
+    private final boolean setParameter;
+
+    private final Class<?> returnType;
+
+    /**
+     * 从结果中取出元素的表达式，以结果为根对象；方法返回 Map 时为null
+     */
+    private final Expression resultKeyExpression;
+
+    BatchOperation(int parameterIndex, Class<?> parameterType, Class<?> returnType, Expression resultKeyExpression) {
+        this.parameterIndex = parameterIndex;
+        this.setParameter = Set.class.isAssignableFrom(parameterType);
+        this.returnType = returnType;
+        this.resultKeyExpression = resultKeyExpression;
+    }
+
+    /**
+     * 用缺失的元素替换集合参数
+     */
+    public Object[] argsFor(Object[] args, List<Object> missing) {
+        Object[] loadArgs = args.clone();
+        loadArgs[parameterIndex] = setParameter ? new LinkedHashSet<>(missing) : new ArrayList<>(missing);
+        return loadArgs;
+    }
+
+    /**
+     * 把方法返回值转换为 元素key -> 结果，元素key与缓存key使用相同的 toString
+     */
+    public Map<String, Object> resultsByKey(Object result) {
+        Map<String, Object> results = new LinkedHashMap<>();
+        if (result instanceof Map<?, ?> map) {
+            map.forEach((element, value) -> results.put(String.valueOf(element), value));
+        } else if (result instanceof Collection<?> collection) {
+            for (Object value : collection) {
+                if (value != null) {
+                    results.put(SpelUtil.evaluate(resultKeyExpression, value), value);
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 按集合参数原来的顺序组装返回值，没有结果的元素不出现在返回值中
+     */
+    public Object assemble(Collection<?> elements, Map<String, Object> results) {
+        if (Map.class.isAssignableFrom(returnType)) {
+            Map<Object, Object> map = new LinkedHashMap<>();
+            for (Object element : elements) {
+                Object value = results.get(String.valueOf(element));
+                if (value != null) {
+                    map.put(element, value);
+                }
+            }
+            return map;
+        }
+        Collection<Object> collection = Set.class.isAssignableFrom(returnType) ? new LinkedHashSet<>() : new ArrayList<>();
+        for (Object element : elements) {
+            Object value = results.get(String.valueOf(element));
+            if (value != null) {
+                collection.add(value);
+            }
+        }
+        return collection;
+    }
+}
@@ -0,0 +1,190 @@
+package com.mcsirius.cloud.redis.support;
+
+import com.mcsirius.cloud.redis.config.LockedCacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBloomFilter;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.cache.CacheProperties;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 缓存准入的布隆过滤器
+ * redis中的 RBloomFilter 为全量数据，本地副本只记录已确认存在的key，本地命中时不再访问redis
+ * 每个使用布隆过滤器的缓存都必须注册 BloomFilterWarmUp（启动时校验），预热完成前过滤器中的key不全，调用直接放行
+ * 异步方法使用 RBloomFilter 的异步接口，只有第一次创建过滤器（tryInit）时在 CacheAsyncExecutor 中执行
+ */
+@Slf4j
+@Component
+public class BloomFilterGuard {
+
+    private static final int WARM_UP_BATCH_SIZE = 1000;
+
+    private final RedissonClient redissonClient;
+
+    private final CacheProperties cacheProperties;
+
+    private final LockedCacheProperties.Bloom bloomProperties;
+
+    private final ObjectProvider<BloomFilterWarmUp> warmUps;
+
+    private final CacheAsyncExecutor asyncExecutor;
+
+    private final Map<String, Filter> filters = new ConcurrentHashMap<>();
+
+    /**
+     * 已经预热完成的缓存名
+     */
+    private final Set<String> warmedUp = ConcurrentHashMap.newKeySet();
+
+    public BloomFilterGuard(RedissonClient redissonClient, CacheProperties cacheProperties,
+                            LockedCacheProperties lockedCacheProperties, ObjectProvider<BloomFilterWarmUp> warmUps,
+                            CacheAsyncExecutor asyncExecutor) {
+        this.redissonClient = redissonClient;
+        this.cacheProperties = cacheProperties;
+        this.bloomProperties = lockedCacheProperties.getBloom();
+        this.warmUps = warmUps;
+        this.asyncExecutor = asyncExecutor;
+    }
+
+    /**
+     * 判断key是否可能存在，返回false时key一定不存在；缓存预热完成前总是返回true
+     */
+    public boolean mightContain(String cacheName, String key, long expectedInsertions, double falseProbability) {
+        if (!warmedUp.contains(cacheName)) {
+            return true;
+        }
+        Filter filter = getFilter(cacheName, expectedInsertions, falseProbability);
+        if (filter.local.mightContain(key)) {
+            return true;
+        }
+        if (filter.remote.contains(key)) {
+            filter.local.put(key);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * mightContain 的异步版本
+     */
+    public CompletableFuture<Boolean> mightContainAsync(String cacheName, String key, long expectedInsertions,
+                                                        double falseProbability) {
+        if (!warmedUp.contains(cacheName)) {
+            return CompletableFuture.completedFuture(true);
+        }
+        return getFilterAsync(cacheName, expectedInsertions, falseProbability).thenCompose(filter -> {
+            if (filter.local.mightContain(key)) {
+                return CompletableFuture.completedFuture(true);
+            }
+            return filter.remote.containsAsync(key).toCompletableFuture().thenApply(contains -> {
+                if (contains) {
+                    filter.local.put(key);
+                }
+                return contains;
+            });
+        });
+    }
+
+    /**
+     * 新增数据时调用，把key写入布隆过滤器
+     * @param expectedInsertions 过滤器尚未创建时使用的预计元素数量，<=0 时使用配置文件中的值
+     * @param falseProbability 过滤器尚未创建时使用的误判率，<=0 时使用配置文件中的值
+     */
+    public void put(String cacheName, String key, long expectedInsertions, double falseProbability) {
+        Filter filter = getFilter(cacheName, expectedInsertions, falseProbability);
+        filter.remote.add(key);
+        filter.local.put(key);
+    }
+
+    /**
+     * put 的异步版本
+     */
+    public CompletableFuture<Void> putAsync(String cacheName, String key, long expectedInsertions, double falseProbability) {
+        return getFilterAsync(cacheName, expectedInsertions, falseProbability).thenCompose(filter ->
+                filter.remote.addAsync(key).toCompletableFuture().thenAccept(added -> filter.local.put(key)));
+    }
+
+    /**
+     * 批量写入布隆过滤器
+     */
+    public void putAll(String cacheName, Iterable<?> keys, long expectedInsertions, double falseProbability) {
+        Filter filter = getFilter(cacheName, expectedInsertions, falseProbability);
+        List<String> batch = new ArrayList<>(WARM_UP_BATCH_SIZE);
+        for (Object key : keys) {
+            batch.add(String.valueOf(key));
+            if (batch.size() >= WARM_UP_BATCH_SIZE) {
+                flush(filter, batch);
+            }
+        }
+        flush(filter, batch);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        warmUps.orderedStream().forEach(warmUp -> {
+            long start = System.currentTimeMillis();
+            putAll(warmUp.cacheName(), warmUp.keys(), warmUp.expectedInsertions(), warmUp.falseProbability());
+            warmedUp.add(warmUp.cacheName());
+            log.info("布隆过滤器预热完成：{}，耗时 {} ms", warmUp.cacheName(), System.currentTimeMillis() - start);
+        });
+    }
+
+    private void flush(Filter filter, List<String> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        filter.remote.add(batch);
+        batch.forEach(filter.local::put);
+        batch.clear();
+    }
+
+    /**
+     * 过滤器已创建时直接返回，否则在线程池中创建，避免在调用线程上阻塞
+     */
+    private CompletableFuture<Filter> getFilterAsync(String cacheName, long expectedInsertions, double falseProbability) {
+        Filter filter = filters.get(cacheName);
+        if (filter != null) {
+            return CompletableFuture.completedFuture(filter);
+        }
+        return asyncExecutor.supply(() -> getFilter(cacheName, expectedInsertions, falseProbability));
+    }
+
+    private Filter getFilter(String cacheName, long expectedInsertions, double falseProbability) {
+        return filters.computeIfAbsent(cacheName, name -> {
+            long insertions = expectedInsertions > 0 ? expectedInsertions : bloomProperties.getExpectedInsertions();
+            double probability = falseProbability > 0 ? falseProbability : bloomProperties.getFalseProbability();
+            RBloomFilter<String> remote = redissonClient.getBloomFilter(filterName(name), StringCodec.INSTANCE);
+            // 已经初始化过时沿用redis中的参数
+            if (!remote.tryInit(insertions, probability)) {
+                insertions = remote.getExpectedInsertions();
+                probability = remote.getFalseProbability();
+            }
+            return new Filter(remote, new LocalBloomFilter(insertions, probability));
+        });
+    }
+
+    private String filterName(String cacheName) {
+        String name = cacheName + ":bloom";
+        if (null != cacheProperties) {
+            CacheProperties.Redis redisProperties = cacheProperties.getRedis();
+            if (redisProperties.isUseKeyPrefix() && redisProperties.getKeyPrefix() != null) {
+                name = redisProperties.getKeyPrefix() + name;
+            }
+        }
+        return name;
+    }
+
+    private record Filter(RBloomFilter<String> remote, LocalBloomFilter local) {
+    }
+}
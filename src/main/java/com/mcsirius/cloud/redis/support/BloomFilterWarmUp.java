@@ -0,0 +1,32 @@
+package com.mcsirius.cloud.redis.support;
+
+/**
+ * 布隆过滤器预热接口
+ * 实现类注册为 spring bean 后，应用启动完成时会把 keys() 返回的全部key写入对应缓存的布隆过滤器
+ */
+public interface BloomFilterWarmUp {
+
+    /**
+     * 缓存名称，与 LockedCacheable 的 cacheName 一致（不含 #TTL 部分）
+     */
+    String cacheName();
+
+    /**
+     * 全量的合法key，与 LockedCacheable 的 key 表达式计算结果一致
+     */
+    Iterable<?> keys();
+
+    /**
+     * 预计元素数量，<=0 时使用配置文件中的值
+     */
+    default long expectedInsertions() {
+        return 0;
+    }
+
+    /**
+     * 误判率，<=0 时使用配置文件中的值
+     */
+    default double falseProbability() {
+        return 0;
+    }
+}
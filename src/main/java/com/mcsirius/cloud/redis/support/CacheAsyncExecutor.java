@@ -0,0 +1,84 @@
+package com.mcsirius.cloud.redis.support;
+
+import com.mcsirius.cloud.redis.config.LockedCacheProperties;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.i18n.LocaleContext;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 异步缓存流程使用的有界线程池，执行没有异步接口的阻塞操作（如 SCAN 删除）以及调用目标方法
+ * 不使用公共线程池，也不在 redisson 的IO线程上执行业务代码；队列满时任务被拒绝，对应的 future 以 RejectedExecutionException 失败
+ */
+@Component
+public class CacheAsyncExecutor implements DisposableBean {
+
+    private final ThreadPoolExecutor executor;
+
+    public CacheAsyncExecutor(LockedCacheProperties lockedCacheProperties) {
+        LockedCacheProperties.Async async = lockedCacheProperties.getAsync();
+        AtomicInteger index = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(async.getThreads(), async.getThreads(),
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(async.getQueueCapacity()), runnable -> {
+            Thread thread = new Thread(runnable, "locked-cache-async-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 在线程池中执行阻塞操作
+     */
+    public <T> CompletableFuture<T> supply(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * 在调用线程上捕获日志 MDC 和 LocaleContext，返回的 Executor 在线程池中执行任务时恢复它们，用于调用目标方法
+     * 其他 ThreadLocal（如事务、安全上下文）不会传递到线程池中，异步的缓存方法不应依赖它们
+     */
+    public Executor withCallerContext() {
+        Map<String, String> mdc = MDC.getCopyOfContextMap();
+        LocaleContext localeContext = LocaleContextHolder.getLocaleContext();
+        return task -> executor.execute(() -> {
+            Map<String, String> previousMdc = MDC.getCopyOfContextMap();
+            LocaleContext previousLocale = LocaleContextHolder.getLocaleContext();
+            restore(mdc, localeContext);
+            try {
+                task.run();
+            } finally {
+                restore(previousMdc, previousLocale);
+            }
+        });
+    }
+
+    private static void restore(Map<String, String> mdc, LocaleContext localeContext) {
+        if (mdc != null) {
+            MDC.setContextMap(mdc);
+        } else {
+            MDC.clear();
+        }
+        LocaleContextHolder.setLocaleContext(localeContext);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
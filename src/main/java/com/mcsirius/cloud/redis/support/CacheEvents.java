@@ -0,0 +1,60 @@
+package com.mcsirius.cloud.redis.support;
+
+import com.mcsirius.cloud.redis.config.LockedCacheProperties;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+
+/**
+ * 创建和提交缓存注解的 JFR 事件
+ * 关闭后仍会创建事件对象以便切面统一记录各阶段耗时，但不会提交
+ */
+@Component
+public class CacheEvents {
+
+    private final boolean enabled;
+
+    private final long thresholdNanos;
+
+    public CacheEvents(LockedCacheProperties lockedCacheProperties) {
+        LockedCacheProperties.Jfr jfr = lockedCacheProperties.getJfr();
+        this.enabled = jfr.isEnabled();
+        this.thresholdNanos = jfr.getThreshold().toNanos();
+    }
+
+    /**
+     * 开始一次调用
+     */
+    public CacheInvocationEvent begin() {
+        CacheInvocationEvent event = new CacheInvocationEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * 结束一次调用，JFR 正在录制且总耗时超过阈值时提交事件
+     * @param name 完整的缓存key，只记录其hashCode
+     * @param outcome 调用结果，为null时使用调用过程中记录的结果
+     */
+    public void commit(CacheInvocationEvent event, String operation, String cacheName, ProceedingJoinPoint joinPoint,
+                       String name, String outcome) {
+        if (!enabled) {
+            return;
+        }
+        event.end();
+        if (!event.shouldCommit() || event.elapsedNanos() < thresholdNanos) {
+            return;
+        }
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        event.operation = operation;
+        event.cacheName = cacheName;
+        event.method = method.getDeclaringClass().getSimpleName() + "." + method.getName();
+        event.keyHash = name != null ? name.hashCode() : 0;
+        if (outcome != null) {
+            event.outcome = outcome;
+        }
+        event.commit();
+    }
+}
@@ -0,0 +1,106 @@
+package com.mcsirius.cloud.redis.support;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * 缓存注解一次调用的 JFR 事件，记录各阶段耗时
+ * 未开启 JFR 录制时只有创建对象和读取时钟的开销；只有总耗时超过 locked-cache.jfr.threshold 的调用才会提交
+ * 同一阶段执行多次（如等待锁后重新读取redis）时耗时累加
+ */
+@Name("com.mcsirius.cloud.redis.CacheInvocation")
+@Label("Cache Invocation")
+@Category({"Redis Cache"})
+@Description("一次缓存注解调用的各阶段耗时")
+@StackTrace(false)
+public class CacheInvocationEvent extends Event {
+
+    @Label("Operation")
+    @Description("注解类型：LockedCacheable、LockedCacheEvict、ClearAndReloadCache")
+    String operation;
+
+    @Label("Cache Name")
+    String cacheName;
+
+    @Label("Method")
+    String method;
+
+    @Label("Key Hash")
+    @Description("完整缓存key的hashCode，避免在录制文件中保存业务数据")
+    int keyHash;
+
+    @Label("Outcome")
+    String outcome;
+
+    @Label("Lock Wait")
+    @Description("获取读锁、sync锁或写锁的等待时间")
+    @Timespan(Timespan.NANOSECONDS)
+    long lockWait;
+
+    @Label("Redis Read")
+    @Description("读取redis的往返时间")
+    @Timespan(Timespan.NANOSECONDS)
+    long redisRead;
+
+    @Label("Decode")
+    @Description("反序列化value的时间")
+    @Timespan(Timespan.NANOSECONDS)
+    long decode;
+
+    @Label("Load")
+    @Description("执行被缓存方法的时间")
+    @Timespan(Timespan.NANOSECONDS)
+    long load;
+
+    @Label("Redis Write")
+    @Description("序列化并写入redis的时间")
+    @Timespan(Timespan.NANOSECONDS)
+    long redisWrite;
+
+    @Label("Evict")
+    @Description("删除redis缓存的时间")
+    @Timespan(Timespan.NANOSECONDS)
+    long evict;
+
+    /**
+     * 开始时间，transient 字段不会写入事件
+     */
+    private final transient long startNanos = System.nanoTime();
+
+    public void addLockWait(long nanos) {
+        lockWait += nanos;
+    }
+
+    public void addRedisRead(long nanos) {
+        redisRead += nanos;
+    }
+
+    public void addDecode(long nanos) {
+        decode += nanos;
+    }
+
+    public void addLoad(long nanos) {
+        load += nanos;
+    }
+
+    public void addRedisWrite(long nanos) {
+        redisWrite += nanos;
+    }
+
+    public void addEvict(long nanos) {
+        evict += nanos;
+    }
+
+    public void setOutcome(String outcome) {
+        this.outcome = outcome;
+    }
+
+    long elapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+}
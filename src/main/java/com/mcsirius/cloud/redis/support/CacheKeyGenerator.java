@@ -0,0 +1,193 @@
+package com.mcsirius.cloud.redis.support;
+
+import cn.hutool.core.lang.hash.MurmurHash;
+import org.springframework.cache.interceptor.KeyGenerator;
+import org.springframework.core.MethodClassKey;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 未指定key时 Spring @Cacheable 使用的key生成器
+ * key格式为 类名.方法名(参数类型1,参数类型2):参数1,参数2，参数类型区分同名的重载方法
+ * 字符串加双引号编码为 "a"（其中的 \ 和 " 被转义），整数编码为数字，Boolean 编码为 true/false，枚举编码为 类型简称.名称，
+ * 数组编码为 元素类型简称[a,b]，List 等有序集合编码为 [a,b]，Set 和 Map 按编码结果排序后编码为 {a,b} 和 {k=v}（空 Map 为 {=}），
+ * 其他对象编码为 类型简称"toString()"，null 编码为 \N，保证不同的参数不会得到相同的key
+ * 参数部分超过阈值时替换为 # 加 128 位 Murmur3 哈希的十六进制，避免大参数产生过长的key
+ */
+public class CacheKeyGenerator implements KeyGenerator {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * 每个方法的key前缀只拼接一次
+     */
+    private final Map<MethodClassKey, String> prefixes = new ConcurrentHashMap<>();
+
+    private final int hashThreshold;
+
+    /**
+     * @param hashThreshold 参数部分超过该长度时使用哈希，<=0 时不哈希
+     */
+    public CacheKeyGenerator(int hashThreshold) {
+        this.hashThreshold = hashThreshold;
+    }
+
+    @Override
+    public Object generate(Object target, Method method, Object... params) {
+        String prefix = prefix(target, method);
+        StringBuilder sb = new StringBuilder(prefix.length() + 16 * params.length);
+        sb.append(prefix);
+        for (int i = 0; i < params.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            encode(sb, params[i]);
+        }
+        int prefixLength = prefix.length();
+        if (hashThreshold > 0 && sb.length() - prefixLength > hashThreshold) {
+            long[] hash = MurmurHash.hash128(sb.subSequence(prefixLength, sb.length()));
+            sb.setLength(prefixLength);
+            sb.append('#');
+            appendHex(sb, hash[0]);
+            appendHex(sb, hash[1]);
+        }
+        return sb.toString();
+    }
+
+    private String prefix(Object target, Method method) {
+        Class<?> targetClass = ClassUtils.getUserClass(target);
+        return prefixes.computeIfAbsent(new MethodClassKey(method, targetClass), key -> {
+            StringBuilder sb = new StringBuilder(targetClass.getName()).append('.').append(method.getName()).append('(');
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            for (int i = 0; i < parameterTypes.length; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append(parameterTypes[i].getTypeName());
+            }
+            return sb.append("):").toString().intern();
+        });
+    }
+
+    private static void encode(StringBuilder sb, Object value) {
+        if (value == null) {
+            sb.append("\\N");
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            sb.append(((Number) value).longValue());
+        } else if (value instanceof Boolean) {
+            sb.append(value);
+        } else if (value instanceof Enum<?> constant) {
+            sb.append(ClassUtils.getShortName(constant.getDeclaringClass())).append('.').append(constant.name());
+        } else if (value instanceof CharSequence) {
+            quote(sb, (CharSequence) value);
+        } else if (value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            sb.append(ClassUtils.getShortName(value.getClass().getComponentType())).append('[');
+            for (int i = 0; i < length; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                encode(sb, Array.get(value, i));
+            }
+            sb.append(']');
+        } else if (value instanceof Set<?> && !(value instanceof SortedSet<?>)) {
+            List<String> elements = new ArrayList<>(((Collection<?>) value).size());
+            for (Object element : (Collection<?>) value) {
+                elements.add(encode(element));
+            }
+            appendSorted(sb, elements);
+        } else if (value instanceof Collection<?>) {
+            sb.append('[');
+            boolean first = true;
+            for (Object element : (Collection<?>) value) {
+                if (!first) {
+                    sb.append(',');
+                }
+                first = false;
+                encode(sb, element);
+            }
+            sb.append(']');
+        } else if (value instanceof Map<?, ?> && ((Map<?, ?>) value).isEmpty()) {
+            // 与空 Set 区分
+            sb.append("{=}");
+        } else if (value instanceof SortedMap<?, ?>) {
+            sb.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!first) {
+                    sb.append(',');
+                }
+                first = false;
+                encode(sb, entry.getKey());
+                sb.append('=');
+                encode(sb, entry.getValue());
+            }
+            sb.append('}');
+        } else if (value instanceof Map<?, ?>) {
+            List<String> entries = new ArrayList<>(((Map<?, ?>) value).size());
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                StringBuilder entrySb = new StringBuilder();
+                encode(entrySb, entry.getKey());
+                entrySb.append('=');
+                encode(entrySb, entry.getValue());
+                entries.add(entrySb.toString());
+            }
+            appendSorted(sb, entries);
+        } else {
+            sb.append(ClassUtils.getShortName(value.getClass()));
+            quote(sb, value.toString());
+        }
+    }
+
+    private static String encode(Object value) {
+        StringBuilder sb = new StringBuilder();
+        encode(sb, value);
+        return sb.toString();
+    }
+
+    /**
+     * HashSet、HashMap 的遍历顺序与插入历史和容量有关，排序后相等的集合总是得到相同的编码
+     */
+    private static void appendSorted(StringBuilder sb, List<String> elements) {
+        elements.sort(null);
+        sb.append('{');
+        for (int i = 0; i < elements.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(elements.get(i));
+        }
+        sb.append('}');
+    }
+
+    /**
+     * 加双引号编码，引号内的分隔符不需要转义
+     */
+    private static void quote(StringBuilder sb, CharSequence value) {
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+        sb.append('"');
+    }
+
+    private static void appendHex(StringBuilder sb, long value) {
+        for (int shift = 60; shift >= 0; shift -= 4) {
+            sb.append(HEX[(int) (value >>> shift) & 0xF]);
+        }
+    }
+}
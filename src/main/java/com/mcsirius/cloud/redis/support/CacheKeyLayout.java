@@ -0,0 +1,70 @@
+package com.mcsirius.cloud.redis.support;
+
+import com.mcsirius.cloud.redis.config.LockedCacheProperties;
+import org.springframework.data.redis.connection.ClusterSlotHashUtil;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 缓存在redis中的key布局，三个缓存注解切面和 TTCacheManager 共用
+ * 开启 hash tag 后逻辑key放在 {} 中，如 user:{42}，值、读写锁 :rw、加载锁 :sync、旧值副本 :stale 都在同一个slot，
+ * redis cluster 下lua脚本可以同时操作它们，一次缓存操作也只访问一个节点
+ */
+@Component
+public class CacheKeyLayout {
+
+    private final boolean hashTag;
+
+    public CacheKeyLayout(LockedCacheProperties lockedCacheProperties) {
+        this.hashTag = lockedCacheProperties.getKey().isHashTag();
+    }
+
+    public boolean isHashTag() {
+        return hashTag;
+    }
+
+    /**
+     * 拼接redis中的完整名称
+     * @param namePrefix key前缀 + 缓存名 + ":"
+     * @param fullName 未配置key时使用的完整名称
+     * @param key 逻辑key，未配置key时为null
+     */
+    public String resolveName(String namePrefix, String fullName, String key) {
+        if (!hashTag) {
+            return key == null ? fullName : namePrefix + key;
+        }
+        if (key == null) {
+            return tag(fullName);
+        }
+        // 空的 {} 不会作为 hash tag，用整个前缀作为 tag
+        return key.isEmpty() ? tag(namePrefix) : namePrefix + tag(key);
+    }
+
+    /**
+     * 开启 hash tag 时按slot分组，同一组的key可以用一条多key命令读写；未开启时所有key在同一组
+     * 返回每组key在原列表中的下标
+     */
+    public Collection<List<Integer>> groupBySlot(byte[][] rawKeys) {
+        if (!hashTag) {
+            List<Integer> all = new ArrayList<>(rawKeys.length);
+            for (int i = 0; i < rawKeys.length; i++) {
+                all.add(i);
+            }
+            return List.of(all);
+        }
+        Map<Integer, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < rawKeys.length; i++) {
+            groups.computeIfAbsent(ClusterSlotHashUtil.calculateSlot(rawKeys[i]), slot -> new ArrayList<>()).add(i);
+        }
+        return groups.values();
+    }
+
+    public static String tag(String key) {
+        return "{" + key + "}";
+    }
+}
@@ -0,0 +1,185 @@
+package com.mcsirius.cloud.redis.support;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存注解和 TTCacheManager 的 Micrometer 指标
+ * 注解的指标按缓存名（cache）和方法（method，类名.方法名）打标签，每个方法的指标只创建一次
+ * 容器中没有 MeterRegistry 时注册到 Metrics.globalRegistry，未配置任何实现时不产生开销
+ */
+@Component
+public class CacheMetrics {
+
+    private final MeterRegistry registry;
+
+    private final Map<Method, Meters> meters = new ConcurrentHashMap<>();
+
+    public CacheMetrics(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.registry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+    }
+
+    /**
+     * 获取切点方法的指标
+     */
+    public Meters of(ProceedingJoinPoint joinPoint, String cacheName) {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        return meters.computeIfAbsent(method, key -> new Meters(registry, Tags.of("cache", cacheName,
+                "method", key.getDeclaringClass().getSimpleName() + "." + key.getName())));
+    }
+
+    /**
+     * 注册 RedisCache 自带的统计（需开启 enableStatistics），指标名与 spring boot actuator 的缓存指标一致
+     */
+    public void bindRedisCache(RedisCache cache) {
+        Tags tags = Tags.of("cache", cache.getName(), "cache.manager", "redisCacheManager");
+        FunctionCounter.builder("cache.gets", cache, c -> c.getStatistics().getHits())
+                .tags(tags).tag("result", "hit").description("The number of times cache lookup methods have returned a cached value.")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", cache, c -> c.getStatistics().getMisses())
+                .tags(tags).tag("result", "miss").description("The number of times cache lookup methods have not returned a value.")
+                .register(registry);
+        FunctionCounter.builder("cache.puts", cache, c -> c.getStatistics().getPuts())
+                .tags(tags).description("The number of entries added to the cache.")
+                .register(registry);
+        FunctionCounter.builder("cache.evictions", cache, c -> c.getStatistics().getDeletes())
+                .tags(tags).description("The number of entries removed from the cache.")
+                .register(registry);
+        TimeGauge.builder("cache.lock.duration", cache, TimeUnit.NANOSECONDS,
+                        c -> c.getStatistics().getLockWaitDuration(TimeUnit.NANOSECONDS))
+                .tags(tags).description("The time the cache has spent waiting on a lock.")
+                .register(registry);
+    }
+
+    /**
+     * 单个方法的指标
+     */
+    public static class Meters {
+
+        private final Counter hits;
+
+        private final Counter misses;
+
+        private final Counter negativeHits;
+
+        private final Timer readLockWait;
+
+        private final Timer syncLockWait;
+
+        private final Counter contention;
+
+        private final Timer loadSuccess;
+
+        private final Timer loadFailure;
+
+        private final DistributionSummary valueSize;
+
+        private final Counter evictions;
+
+        private final Counter evictedKeys;
+
+        Meters(MeterRegistry registry, Tags tags) {
+            this.hits = Counter.builder("locked.cache.gets").tags(tags).tag("result", "hit")
+                    .description("读取缓存命中的次数").register(registry);
+            this.misses = Counter.builder("locked.cache.gets").tags(tags).tag("result", "miss")
+                    .description("读取缓存未命中的次数").register(registry);
+            this.negativeHits = Counter.builder("locked.cache.gets").tags(tags).tag("result", "negative_hit")
+                    .description("命中空值占位或被布隆过滤器拦截的次数").register(registry);
+            this.readLockWait = Timer.builder("locked.cache.lock.wait").tags(tags).tag("lock", "read")
+                    .description("获取读锁的等待时间").register(registry);
+            this.syncLockWait = Timer.builder("locked.cache.lock.wait").tags(tags).tag("lock", "sync")
+                    .description("获取 sync 锁或等待其他实例加载完成的时间").register(registry);
+            this.contention = Counter.builder("locked.cache.lock.contention").tags(tags)
+                    .description("sync 锁被其他线程持有、需要等待的次数").register(registry);
+            this.loadSuccess = Timer.builder("locked.cache.load").tags(tags).tag("outcome", "success")
+                    .description("执行方法加载数据的耗时").register(registry);
+            this.loadFailure = Timer.builder("locked.cache.load").tags(tags).tag("outcome", "failure")
+                    .description("执行方法加载数据的耗时").register(registry);
+            this.valueSize = DistributionSummary.builder("locked.cache.value.size").tags(tags).baseUnit("bytes")
+                    .description("写入redis的value序列化后的大小").register(registry);
+            this.evictions = Counter.builder("locked.cache.evictions").tags(tags)
+                    .description("删除缓存的次数").register(registry);
+            this.evictedKeys = Counter.builder("locked.cache.evicted.keys").tags(tags)
+                    .description("删除的key数量").register(registry);
+        }
+
+        public void hit() {
+            hits.increment();
+        }
+
+        public void hits(int count) {
+            hits.increment(count);
+        }
+
+        public void miss() {
+            misses.increment();
+        }
+
+        public void misses(int count) {
+            misses.increment(count);
+        }
+
+        public void negativeHit() {
+            negativeHits.increment();
+        }
+
+        public void negativeHits(int count) {
+            negativeHits.increment(count);
+        }
+
+        /**
+         * 按读取结果记录命中、未命中或空值命中
+         */
+        public void read(Object cached) {
+            if (cached == null) {
+                misses.increment();
+            } else if (cached instanceof NullValue) {
+                negativeHits.increment();
+            } else {
+                hits.increment();
+            }
+        }
+
+        public void readLockWait(long nanos) {
+            readLockWait.record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        public void syncLockWait(long nanos) {
+            syncLockWait.record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        public void contention() {
+            contention.increment();
+        }
+
+        public void load(long nanos, boolean success) {
+            (success ? loadSuccess : loadFailure).record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        public void valueSize(int bytes) {
+            valueSize.record(bytes);
+        }
+
+        public void evicted(long keys) {
+            evictions.increment();
+            evictedKeys.increment(keys);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.mcsirius.cloud.redis.support;
+
+import com.mcsirius.cloud.redis.utils.SpelUtil;
+import lombok.Getter;
+import org.springframework.expression.Expression;
+
+import java.lang.annotation.Annotation;
+import java.time.Duration;
+
+/**
+ * 缓存注解的元数据，每个方法只解析一次
+ * 包括缓存名、key前缀、过期策略、sync标记以及预先解析并编译的Spel表达式
+ */
+@Getter
+public class CacheOperationMetadata<A extends Annotation> {
+
+    /**
+     * 方法上的注解，方法未加注解时为null
+     */
+    private final A annotation;
+
+    /**
+     * 缓存名（不含 #TTL 部分）
+     */
+    private final String cacheName;
+
+    /**
+     * 缓存的基础TTL，永不过期时为null
+     */
+    private final Duration duration;
+
+    /**
+     * 缓存的过期策略，与 TTCacheManager 共用
+     */
+    private final TtlPolicy ttlPolicy;
+
+    private final boolean sync;
+
+    /**
+     * key表达式，未配置key时为null
+     */
+    private final Expression keyExpression;
+
+    /**
+     * key表达式只引用了一个参数（如 #arg0）时该参数的下标，此时不需要执行表达式
+     */
+    private final int keyParameterIndex;
+
+    private final String[] parameterNames;
+
+    /**
+     * 拼接在key之前的部分：key前缀 + 缓存名 + ":"
+     */
+    private final String namePrefix;
+
+    /**
+     * 未配置key时使用的完整名称
+     */
+    private final String fullName;
+
+    /**
+     * 方法的异步返回类型，同步方法为 NONE
+     */
+    private final AsyncReturnType asyncReturnType;
+
+    /**
+     * 批量模式的元数据，未开启批量模式时为null
+     */
+    private final BatchOperation batch;
+
+    private final CacheKeyLayout keyLayout;
+
+    CacheOperationMetadata(A annotation, String cacheName, TtlPolicy ttlPolicy, boolean sync, Expression keyExpression,
+                           int keyParameterIndex, String[] parameterNames, String keyPrefix,
+                           AsyncReturnType asyncReturnType, BatchOperation batch, CacheKeyLayout keyLayout) {
+        this.annotation = annotation;
+        this.cacheName = cacheName;
+        this.duration = ttlPolicy.getTimeToLive();
+        this.ttlPolicy = ttlPolicy;
+        this.sync = sync;
+        this.keyExpression = keyExpression;
+        this.keyParameterIndex = keyParameterIndex;
+        this.parameterNames = parameterNames;
+        this.namePrefix = cacheName.isEmpty() ? keyPrefix : keyPrefix + cacheName + ":";
+        this.fullName = keyPrefix + cacheName;
+        this.asyncReturnType = asyncReturnType;
+        this.batch = batch;
+        this.keyLayout = keyLayout;
+    }
+
+    /**
+     * 根据方法参数计算key，未配置key时返回null
+     */
+    public String generateKey(Object[] args) {
+        if (keyParameterIndex >= 0) {
+            return args[keyParameterIndex].toString();
+        }
+        if (keyExpression == null) {
+            return null;
+        }
+        return SpelUtil.generateKey(keyExpression, parameterNames, args);
+    }
+
+    /**
+     * 拼接redis中的完整名称：key前缀 + 缓存名 + ":" + key，开启 hash tag 时key放在 {} 中
+     */
+    public String resolveName(String key) {
+        return keyLayout.resolveName(namePrefix, fullName, key);
+    }
+}
@@ -0,0 +1,231 @@
+package com.mcsirius.cloud.redis.support;
+
+import cn.hutool.core.util.StrUtil;
+import com.mcsirius.cloud.redis.annotation.ClearAndReloadCache;
+import com.mcsirius.cloud.redis.annotation.LockedCacheEvict;
+import com.mcsirius.cloud.redis.annotation.LockedCacheable;
+import com.mcsirius.cloud.redis.utils.SpelUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.cache.CacheProperties;
+import org.springframework.core.MethodClassKey;
+import org.springframework.core.MethodIntrospector;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.expression.Expression;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 缓存注解元数据的注册表
+ * 启动完成时扫描所有bean上的缓存注解并提前解析校验，运行期按方法懒加载，避免每次调用都解析注解和表达式
+ */
+@Slf4j
+@Component
+public class CacheOperationMetadataRegistry implements SmartInitializingSingleton {
+
+    private static final List<Class<? extends Annotation>> ANNOTATION_TYPES =
+            List.of(LockedCacheable.class, LockedCacheEvict.class, ClearAndReloadCache.class);
+
+    /**
+     * 只引用一个参数的表达式，如 #arg0
+     */
+    private static final Pattern SIMPLE_VARIABLE = Pattern.compile("#(\\w+)");
+
+    /**
+     * 不能与批量模式同时开启的注解属性
+     */
+    private static final List<String> BATCH_UNSUPPORTED = List.of("local", "bloomFilter", "refreshAhead", "staleWhileError");
+
+    private final Map<MethodClassKey, CacheOperationMetadata<?>> metadataCache = new ConcurrentHashMap<>();
+
+    private final ListableBeanFactory beanFactory;
+
+    private final CacheProperties cacheProperties;
+
+    private final TtlPolicyResolver ttlPolicyResolver;
+
+    private final CacheKeyLayout keyLayout;
+
+    private final ObjectProvider<BloomFilterWarmUp> bloomFilterWarmUps;
+
+    public CacheOperationMetadataRegistry(ListableBeanFactory beanFactory, CacheProperties cacheProperties,
+                                          TtlPolicyResolver ttlPolicyResolver, CacheKeyLayout keyLayout,
+                                          ObjectProvider<BloomFilterWarmUp> bloomFilterWarmUps) {
+        this.beanFactory = beanFactory;
+        this.cacheProperties = cacheProperties;
+        this.ttlPolicyResolver = ttlPolicyResolver;
+        this.keyLayout = keyLayout;
+        this.bloomFilterWarmUps = bloomFilterWarmUps;
+    }
+
+    /**
+     * 获取切点方法的注解元数据
+     */
+    public <A extends Annotation> CacheOperationMetadata<A> get(ProceedingJoinPoint joinPoint, Class<A> annotationType) {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        Object target = joinPoint.getTarget();
+        Class<?> targetClass = target != null ? AopUtils.getTargetClass(target) : method.getDeclaringClass();
+        return get(method, targetClass, annotationType);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <A extends Annotation> CacheOperationMetadata<A> get(Method method, Class<?> targetClass, Class<A> annotationType) {
+        MethodClassKey cacheKey = new MethodClassKey(method, targetClass);
+        return (CacheOperationMetadata<A>) metadataCache.computeIfAbsent(cacheKey,
+                key -> build(AopUtils.getMostSpecificMethod(method, targetClass), annotationType));
+    }
+
+    /**
+     * 按缓存名查找已解析的注解元数据，不存在时返回null；启动完成前只能找到已经调用过的方法
+     */
+    @SuppressWarnings("unchecked")
+    public <A extends Annotation> CacheOperationMetadata<A> find(String cacheName, Class<A> annotationType) {
+        for (CacheOperationMetadata<?> metadata : metadataCache.values()) {
+            if (annotationType.isInstance(metadata.getAnnotation()) && cacheName.equals(metadata.getCacheName())) {
+                return (CacheOperationMetadata<A>) metadata;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        for (String beanName : beanFactory.getBeanNamesForType(Object.class, false, false)) {
+            Class<?> beanType = beanFactory.getType(beanName, false);
+            if (beanType == null || !AnnotationUtils.isCandidateClass(beanType, ANNOTATION_TYPES)) {
+                continue;
+            }
+            Class<?> userClass = ClassUtils.getUserClass(beanType);
+            for (Class<? extends Annotation> annotationType : ANNOTATION_TYPES) {
+                MethodIntrospector.selectMethods(userClass, (MethodIntrospector.MetadataLookup<Annotation>) method ->
+                                AnnotationUtils.findAnnotation(method, annotationType))
+                        .keySet()
+                        .forEach(method -> get(method, userClass, annotationType));
+            }
+        }
+        log.info("缓存注解元数据预解析完成，共 {} 个方法", metadataCache.size());
+    }
+
+    private <A extends Annotation> CacheOperationMetadata<A> build(Method method, Class<A> annotationType) {
+        A annotation = AnnotationUtils.findAnnotation(method, annotationType);
+        String[] parameterNames = SpelUtil.getParameterNames(method);
+        AsyncReturnType asyncReturnType = AsyncReturnType.of(method.getReturnType());
+        if (annotation == null) {
+            return new CacheOperationMetadata<>(null, "", TtlPolicy.persistent(), false, null, -1, parameterNames, "", asyncReturnType, null,
+                    keyLayout);
+        }
+        String name = (String) AnnotationUtils.getValue(annotation, "cacheName");
+        String[] array = StringUtils.delimitedListToStringArray(name != null ? name : "", "#");
+        String cacheName = array[0];
+        Duration duration = null;
+        if (array.length > 1) {
+            try {
+                duration = Duration.parse(array[1]);
+            } catch (DateTimeParseException e) {
+                log.error("错误的 TTL 格式");
+                throw e;
+            }
+        }
+        Expression keyExpression = null;
+        int keyParameterIndex = -1;
+        String key = (String) AnnotationUtils.getValue(annotation, "key");
+        if (StrUtil.isNotBlank(key)) {
+            keyExpression = SpelUtil.parseExpression(key);
+            Matcher matcher = SIMPLE_VARIABLE.matcher(key.trim());
+            if (matcher.matches()) {
+                String variable = matcher.group(1);
+                keyParameterIndex = indexOf(parameterNames, variable);
+                if (keyParameterIndex < 0 && !"root".equals(variable) && !"this".equals(variable)) {
+                    throw new IllegalStateException("缓存注解的key表达式 " + key + " 引用了不存在的参数，方法：" + method);
+                }
+            }
+        }
+        if (Boolean.TRUE.equals(AnnotationUtils.getValue(annotation, "bloomFilter"))
+                && bloomFilterWarmUps.stream().noneMatch(warmUp -> cacheName.equals(warmUp.cacheName()))) {
+            throw new IllegalStateException("缓存 " + cacheName + " 开启了布隆过滤器，但没有注册对应的 BloomFilterWarmUp，方法：" + method);
+        }
+        boolean sync = Boolean.TRUE.equals(AnnotationUtils.getValue(annotation, "sync"));
+        // 旧值副本只在加锁加载的路径上写入和读取，未开启sync时配置不会生效
+        if (Boolean.TRUE.equals(AnnotationUtils.getValue(annotation, "staleWhileError")) && !sync) {
+            throw new IllegalStateException("缓存 " + cacheName + " 开启了 staleWhileError，必须同时开启 sync，方法：" + method);
+        }
+        TtlPolicy ttlPolicy = ttlPolicyResolver.resolve(cacheName, duration);
+        // 提前刷新按写入时记录的过期时间计算，滑动过期读取时延长了TTL但不会更新这个时间
+        if (Boolean.TRUE.equals(AnnotationUtils.getValue(annotation, "refreshAhead")) && ttlPolicy.isSliding()) {
+            throw new IllegalStateException("缓存 " + cacheName + " 开启了滑动过期，不能同时使用提前刷新，方法：" + method);
+        }
+        BatchOperation batch = null;
+        if (Boolean.TRUE.equals(AnnotationUtils.getValue(annotation, "batch"))) {
+            // 批量模式只读写redis，不经过本地缓存、布隆过滤器、提前刷新和旧值副本
+            for (String attribute : BATCH_UNSUPPORTED) {
+                if (Boolean.TRUE.equals(AnnotationUtils.getValue(annotation, attribute))) {
+                    throw new IllegalStateException("批量模式不能同时开启 " + attribute + "，方法：" + method);
+                }
+            }
+            batch = buildBatch(method, key, keyParameterIndex, asyncReturnType,
+                    (String) AnnotationUtils.getValue(annotation, "resultKey"));
+        }
+        return new CacheOperationMetadata<>(annotation, cacheName, ttlPolicy, sync, keyExpression, keyParameterIndex,
+                parameterNames, resolveKeyPrefix(), asyncReturnType, batch, keyLayout);
+    }
+
+    /**
+     * 校验并创建批量模式的元数据：key必须直接引用一个集合参数，方法必须同步返回 Map 或集合
+     */
+    private BatchOperation buildBatch(Method method, String key, int keyParameterIndex, AsyncReturnType asyncReturnType,
+                                      String resultKey) {
+        if (keyParameterIndex < 0 || !Collection.class.isAssignableFrom(method.getParameterTypes()[keyParameterIndex])) {
+            throw new IllegalStateException("批量模式的key表达式 " + key + " 必须直接引用一个集合参数，方法：" + method);
+        }
+        Class<?> returnType = method.getReturnType();
+        if (asyncReturnType != AsyncReturnType.NONE
+                || !(Map.class.isAssignableFrom(returnType) || Collection.class.isAssignableFrom(returnType))) {
+            throw new IllegalStateException("批量模式的方法必须返回 Map 或集合，方法：" + method);
+        }
+        Expression resultKeyExpression = null;
+        if (Collection.class.isAssignableFrom(returnType)) {
+            if (StrUtil.isBlank(resultKey)) {
+                throw new IllegalStateException("批量模式的方法返回集合时必须配置 resultKey，方法：" + method);
+            }
+            resultKeyExpression = SpelUtil.parseExpression(resultKey);
+        }
+        return new BatchOperation(keyParameterIndex, method.getParameterTypes()[keyParameterIndex], returnType,
+                resultKeyExpression);
+    }
+
+    private String resolveKeyPrefix() {
+        if (null != cacheProperties) {
+            CacheProperties.Redis redisProperties = cacheProperties.getRedis();
+            if (redisProperties.isUseKeyPrefix() && redisProperties.getKeyPrefix() != null) {
+                return redisProperties.getKeyPrefix();
+            }
+        }
+        return "";
+    }
+
+    private static int indexOf(String[] parameterNames, String name) {
+        for (int i = 0; i < parameterNames.length; i++) {
+            if (parameterNames[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
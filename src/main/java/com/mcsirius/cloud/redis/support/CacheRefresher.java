@@ -0,0 +1,66 @@
+package com.mcsirius.cloud.redis.support;
+
+import com.mcsirius.cloud.redis.config.LockedCacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 提前刷新缓存的后台线程池
+ * 同一个key同一时间只提交一个刷新任务，队列满时直接放弃，等下一次读取再触发
+ */
+@Slf4j
+@Component
+public class CacheRefresher implements DisposableBean {
+
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    private final ThreadPoolExecutor executor;
+
+    public CacheRefresher(LockedCacheProperties lockedCacheProperties) {
+        LockedCacheProperties.RefreshAhead refreshAhead = lockedCacheProperties.getRefreshAhead();
+        AtomicInteger index = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(refreshAhead.getThreads(), refreshAhead.getThreads(),
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(refreshAhead.getQueueCapacity()), runnable -> {
+            Thread thread = new Thread(runnable, "locked-cache-refresh-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 提交刷新任务，该key已有刷新任务在执行时忽略
+     */
+    public void refresh(String name, Runnable task) {
+        if (!refreshing.add(name)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    log.warn("提前刷新缓存失败：{}", name, e);
+                } finally {
+                    refreshing.remove(name);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(name);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,423 @@
+package com.mcsirius.cloud.redis.support;
+
+import com.mcsirius.cloud.redis.config.LockedCacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.ByteArrayCodec;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * 缓存读写使用的lua脚本，把多次往返合并为一次
+ * 启动时 SCRIPT LOAD 预加载，调用时使用 EVALSHA，脚本不存在（如 SCRIPT FLUSH 或主从切换）时自动改用 EVAL
+ * 读取脚本直接检查 redisson 读写锁hash中的 mode 字段，未命中时按 redisson 可重入锁的格式（hash中 客户端id:线程id 字段计数）
+ * 获取 sync 锁，与 redisson 3.30 的实现保持一致；锁的释放仍由 redisson 的 unlock 完成
+ * 版本模式（locked-cache.consistency.mode=version）的读取、比较写入和版本号递增同样使用lua脚本，版本号保存在 name:ver 中，
+ * 异步方法通过 redisson 的 RScript 异步执行，不占用线程
+ * 脚本的多个key必须在同一个slot中，集群模式下需要配合 hash tag 使用
+ */
+@Slf4j
+@Component
+public class CacheScripts {
+
+    /**
+     * 读取缓存：有写锁时返回 {0}，命中时返回 {1, value}，未命中时返回 {2}，未命中且获取了 sync 锁时返回 {3}
+     * KEYS[1] 读写锁，KEYS[2] 缓存key，KEYS[3] sync锁
+     * ARGV[1] 滑动过期的TTL（毫秒），为0时不刷新TTL，空值占位（长度为0）不刷新
+     * ARGV[2] sync锁的租期（毫秒），为0时不获取锁；ARGV[3] 锁字段名（客户端id:线程id）
+     */
+    private static final RedisScript<List<Object>> READ_SCRIPT = multiScript(
+            "if redis.call('hget', KEYS[1], 'mode') == 'write' then return {0} end "
+                    + "local value "
+                    + "if ARGV[1] ~= '0' and redis.call('strlen', KEYS[2]) > 0 then value = redis.call('getex', KEYS[2], 'px', ARGV[1]) "
+                    + "else value = redis.call('get', KEYS[2]) end "
+                    + "if value then return {1, value} end "
+                    + "if ARGV[2] ~= '0' and (redis.call('exists', KEYS[3]) == 0 or redis.call('hexists', KEYS[3], ARGV[3]) == 1) then "
+                    + "redis.call('hincrby', KEYS[3], ARGV[3], 1); redis.call('pexpire', KEYS[3], ARGV[2]); return {3} end "
+                    + "return {2}");
+
+    /**
+     * 滑动过期的读取：value不为空值占位（长度为0）时使用 GETEX 在读取的同时刷新TTL，否则只 GET，返回value
+     * KEYS[1] 缓存key；ARGV[1] 刷新的TTL（毫秒）
+     */
+    private static final RedisScript<byte[]> SLIDING_READ_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('strlen', KEYS[1]) > 0 then return redis.call('getex', KEYS[1], 'px', ARGV[1]) end "
+                    + "return redis.call('get', KEYS[1])", byte[].class);
+
+    /**
+     * 版本模式读取缓存：命中时返回 {版本号, value}，未命中时返回 {版本号}，版本号不存在时为0
+     * KEYS[1] 缓存key，KEYS[2] 版本号key；ARGV[1] 滑动过期的TTL（毫秒），为0时不刷新TTL，空值占位（长度为0）不刷新
+     */
+    private static final RedisScript<List<Object>> VERSIONED_READ_SCRIPT = multiScript(
+            "local version = redis.call('get', KEYS[2]) or '0' "
+                    + "local value "
+                    + "if ARGV[1] ~= '0' and redis.call('strlen', KEYS[1]) > 0 then value = redis.call('getex', KEYS[1], 'px', ARGV[1]) "
+                    + "else value = redis.call('get', KEYS[1]) end "
+                    + "if value then return {version, value} end "
+                    + "return {version}");
+
+    /**
+     * 版本模式写回加载结果：版本号与读取时相同才写入缓存（以及旧值副本），返回是否写入
+     * KEYS[1] 缓存key，KEYS[2] 旧值副本key，KEYS[3] 版本号key
+     * ARGV[1] 读取时的版本号，ARGV[2] value，ARGV[3] TTL（毫秒，0为永不过期），ARGV[4] 旧值副本TTL（毫秒，0为不写）
+     */
+    private static final RedisScript<Long> COMPARE_AND_SET_SCRIPT = new DefaultRedisScript<>(
+            "if (redis.call('get', KEYS[3]) or '0') ~= ARGV[1] then return 0 end "
+                    + "if ARGV[3] == '0' then redis.call('set', KEYS[1], ARGV[2]) "
+                    + "else redis.call('set', KEYS[1], ARGV[2], 'px', ARGV[3]) end "
+                    + "if ARGV[4] ~= '0' then redis.call('set', KEYS[2], ARGV[2], 'px', ARGV[4]) end "
+                    + "return 1", Long.class);
+
+    /**
+     * 版本号加一，结果的奇偶与要求不同时再加一，保证写入进行中为奇数、完成后为偶数，返回新的版本号
+     * KEYS[1] 版本号key；ARGV[1] 要求的奇偶（1为奇数，0为偶数），ARGV[2] 版本号的存活时间（毫秒）
+     */
+    private static final RedisScript<Long> BUMP_VERSION_SCRIPT = new DefaultRedisScript<>(
+            "local version = redis.call('incr', KEYS[1]) "
+                    + "if version % 2 ~= tonumber(ARGV[1]) then version = redis.call('incr', KEYS[1]) end "
+                    + "redis.call('pexpire', KEYS[1], ARGV[2]) "
+                    + "return version", Long.class);
+
+    /**
+     * 版本号key的后缀
+     */
+    private static final String VERSION_SUFFIX = ":ver";
+
+    private static final byte[] ODD = "1".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] ZERO = "0".getBytes(StandardCharsets.UTF_8);
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    private final RedissonClient redissonClient;
+
+    private final boolean enabled;
+
+    /**
+     * 读取脚本获取的 sync 锁的租期，与 redisson 看门狗的续期时间一致
+     */
+    private final Duration lockLeaseTime;
+
+    private final LockedCacheProperties.Consistency consistency;
+
+    public CacheScripts(RedisTemplate<String, Object> redisTemplate, RedissonClient redissonClient,
+                        LockedCacheProperties lockedCacheProperties) {
+        this.redisTemplate = redisTemplate;
+        this.redissonClient = redissonClient;
+        this.enabled = lockedCacheProperties.getScript().isEnabled();
+        this.lockLeaseTime = Duration.ofMillis(redissonClient.getConfig().getLockWatchdogTimeout());
+        this.consistency = lockedCacheProperties.getConsistency();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 是否使用版本模式代替读写锁
+     */
+    public boolean isVersioned() {
+        return consistency.getMode() == LockedCacheProperties.ConsistencyMode.VERSION;
+    }
+
+    /**
+     * 版本模式下删除进行中时是否直接返回当前值
+     */
+    public boolean isStaleReads() {
+        return consistency.isStaleReads();
+    }
+
+    /**
+     * 缓存key对应的版本号key，与缓存key在同一个slot中
+     */
+    public static String versionName(String name) {
+        return name + VERSION_SUFFIX;
+    }
+
+    /**
+     * 版本号为奇数时有删除正在进行
+     */
+    public static boolean isWriting(String version) {
+        return (version.charAt(version.length() - 1) & 1) == 1;
+    }
+
+    /**
+     * 启动完成后预加载脚本，失败时调用会自动改用 EVAL；滑动过期的读取脚本与是否开启脚本模式无关，总是预加载
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        List<RedisScript<?>> scripts = new ArrayList<>();
+        scripts.add(SLIDING_READ_SCRIPT);
+        if (enabled) {
+            scripts.addAll(List.of(READ_SCRIPT));
+        }
+        if (isVersioned()) {
+            scripts.addAll(List.of(VERSIONED_READ_SCRIPT, COMPARE_AND_SET_SCRIPT, BUMP_VERSION_SCRIPT));
+        }
+        try {
+            redisTemplate.execute((RedisCallback<Object>) connection -> {
+                for (RedisScript<?> script : scripts) {
+                    connection.scriptingCommands().scriptLoad(script.getScriptAsString().getBytes(StandardCharsets.UTF_8));
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("预加载缓存脚本失败", e);
+        }
+    }
+
+    /**
+     * 一次调用完成写锁检查、读取，以及未命中时为当前线程获取 sync 锁
+     * 脚本获取的锁没有 redisson 的看门狗续期，租期为 redisson 的 lockWatchdogTimeout，释放时调用 RLock.unlock()
+     * @param rwLockName 读写锁名称
+     * @param name 缓存key
+     * @param slidingTtl 滑动过期时读取同时刷新的TTL，不刷新时为null
+     * @param syncLockName 未命中时获取的 sync 锁，不获取时为null
+     */
+    public ScriptedRead read(String rwLockName, String name, Duration slidingTtl, String syncLockName) {
+        String lockField = redissonClient.getId() + ":" + Thread.currentThread().getId();
+        List<Object> result = redisTemplate.execute(READ_SCRIPT, RedisSerializer.byteArray(), resultSerializer(),
+                Arrays.asList(rwLockName, name, syncLockName != null ? syncLockName : name),
+                slidingTtl != null ? millis(slidingTtl) : ZERO, syncLockName != null ? millis(lockLeaseTime) : ZERO,
+                lockField.getBytes(StandardCharsets.UTF_8));
+        if (result == null || result.isEmpty()) {
+            return ScriptedRead.MISS;
+        }
+        if (result.size() > 1) {
+            return new ScriptedRead((byte[]) result.get(1), false);
+        }
+        return ((Number) result.get(0)).intValue() == 3 ? ScriptedRead.LOCKED : ScriptedRead.MISS;
+    }
+
+    /**
+     * 滑动过期的读取，读取和刷新TTL在同一个脚本中完成，空值占位不刷新
+     * @param slidingTtl 刷新的TTL
+     * @return redis中的原始value，不存在时为null
+     */
+    public byte[] readSliding(String name, Duration slidingTtl) {
+        return redisTemplate.execute(SLIDING_READ_SCRIPT, RedisSerializer.byteArray(), RedisSerializer.byteArray(),
+                List.of(name), millis(slidingTtl));
+    }
+
+    /**
+     * readSliding 的异步版本
+     */
+    public CompletableFuture<byte[]> readSlidingAsync(String name, Duration slidingTtl) {
+        return evalAsync(SLIDING_READ_SCRIPT, RScript.ReturnType.VALUE, List.of(name), millis(slidingTtl));
+    }
+
+    /**
+     * 版本模式下一次调用读取缓存和版本号
+     * @param slidingTtl 滑动过期时读取同时刷新的TTL，不刷新时为null
+     */
+    public VersionedValue readVersioned(String name, Duration slidingTtl) {
+        List<Object> result = redisTemplate.execute(VERSIONED_READ_SCRIPT, RedisSerializer.byteArray(), resultSerializer(),
+                Arrays.asList(name, name + VERSION_SUFFIX), slidingTtl != null ? millis(slidingTtl) : ZERO);
+        return toVersionedValue(result);
+    }
+
+    /**
+     * readVersioned 的异步版本
+     */
+    public CompletableFuture<VersionedValue> readVersionedAsync(String name, Duration slidingTtl) {
+        return this.<List<Object>>evalAsync(VERSIONED_READ_SCRIPT, RScript.ReturnType.MULTI,
+                        List.of(name, name + VERSION_SUFFIX), slidingTtl != null ? millis(slidingTtl) : ZERO)
+                .thenApply(CacheScripts::toVersionedValue);
+    }
+
+    /**
+     * 版本号与读取时相同才写入缓存
+     * @param version readVersioned 返回的版本号
+     * @param staleName 旧值副本key，不写副本时为null
+     * @return 是否写入，期间有删除开始或完成时返回false
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public boolean compareAndSet(String name, String version, byte[] rawValue, Duration ttl, String staleName,
+                                 Duration staleTtl) {
+        Long written = redisTemplate.execute(COMPARE_AND_SET_SCRIPT, RedisSerializer.byteArray(), (RedisSerializer) RedisSerializer.string(),
+                Arrays.asList(name, staleName != null ? staleName : name, name + VERSION_SUFFIX),
+                version.getBytes(StandardCharsets.UTF_8), rawValue, ttl != null ? millis(ttl) : ZERO,
+                staleName != null ? millis(staleTtl) : ZERO);
+        return written != null && written == 1;
+    }
+
+    /**
+     * compareAndSet 的异步版本
+     */
+    public CompletableFuture<Boolean> compareAndSetAsync(String name, String version, byte[] rawValue, Duration ttl,
+                                                         String staleName, Duration staleTtl) {
+        return this.<Long>evalAsync(COMPARE_AND_SET_SCRIPT, RScript.ReturnType.INTEGER,
+                        List.of(name, staleName != null ? staleName : name, name + VERSION_SUFFIX),
+                        version.getBytes(StandardCharsets.UTF_8), rawValue, ttl != null ? millis(ttl) : ZERO,
+                        staleName != null ? millis(staleTtl) : ZERO)
+                .thenApply(written -> written != null && written == 1);
+    }
+
+    /**
+     * 删除开始：版本号变为奇数，存活时间为删除方法的最长执行时间
+     */
+    public void beginWrite(String name) {
+        bumpVersion(name, ODD, consistency.getWriteTimeout());
+    }
+
+    /**
+     * 删除完成：版本号变为偶数
+     */
+    public void endWrite(String name) {
+        bumpVersion(name, ZERO, consistency.getVersionTimeToLive());
+    }
+
+    /**
+     * beginWrite 的异步版本
+     */
+    public CompletableFuture<Void> beginWriteAsync(String name) {
+        return bumpVersionAsync(name, ODD, consistency.getWriteTimeout());
+    }
+
+    /**
+     * endWrite 的异步版本
+     */
+    public CompletableFuture<Void> endWriteAsync(String name) {
+        return bumpVersionAsync(name, ZERO, consistency.getVersionTimeToLive());
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void bumpVersion(String name, byte[] parity, Duration ttl) {
+        redisTemplate.execute(BUMP_VERSION_SCRIPT, RedisSerializer.byteArray(), (RedisSerializer) RedisSerializer.string(),
+                List.of(name + VERSION_SUFFIX), parity, millis(ttl));
+    }
+
+    private CompletableFuture<Void> bumpVersionAsync(String name, byte[] parity, Duration ttl) {
+        return this.<Long>evalAsync(BUMP_VERSION_SCRIPT, RScript.ReturnType.INTEGER, List.of(name + VERSION_SUFFIX),
+                parity, millis(ttl)).thenApply(version -> null);
+    }
+
+    /**
+     * 使用 EVALSHA 异步执行脚本，脚本不存在时改用 EVAL；第一个key决定集群模式下发送到的节点
+     */
+    private <T> CompletableFuture<T> evalAsync(RedisScript<?> script, RScript.ReturnType returnType, List<Object> keys,
+                                               Object... args) {
+        RScript rScript = redissonClient.getScript(ByteArrayCodec.INSTANCE);
+        String routingKey = (String) keys.get(0);
+        return rScript.<T>evalShaAsync(routingKey, RScript.Mode.READ_WRITE, script.getSha1(), returnType, keys, args)
+                .toCompletableFuture()
+                .exceptionallyCompose(e -> isNoScript(e)
+                        ? rScript.<T>evalAsync(routingKey, RScript.Mode.READ_WRITE, script.getScriptAsString(), returnType,
+                        keys, args).toCompletableFuture()
+                        : CompletableFuture.failedFuture(e));
+    }
+
+    private static boolean isNoScript(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        return cause.getMessage() != null && cause.getMessage().startsWith("NOSCRIPT");
+    }
+
+    private static VersionedValue toVersionedValue(List<Object> result) {
+        if (result == null || result.isEmpty()) {
+            return new VersionedValue("0", null);
+        }
+        String version = new String((byte[]) result.get(0), StandardCharsets.UTF_8);
+        return new VersionedValue(version, result.size() > 1 ? (byte[]) result.get(1) : null);
+    }
+
+    /**
+     * 返回多个值的脚本，结果按原始字节读取
+     */
+    @SuppressWarnings("unchecked")
+    private static RedisScript<List<Object>> multiScript(String script) {
+        return new DefaultRedisScript<>(script, (Class<List<Object>>) (Class<?>) List.class);
+    }
+
+    /**
+     * 结果按原始字节读取，数字结果不经过反序列化
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> RedisSerializer<T> resultSerializer() {
+        return (RedisSerializer<T>) RedisSerializer.byteArray();
+    }
+
+    private static byte[] millis(Duration duration) {
+        return String.valueOf(Math.max(1, duration.toMillis())).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 读取脚本的结果
+     */
+    public static class ScriptedRead {
+
+        static final ScriptedRead MISS = new ScriptedRead(null, false);
+
+        static final ScriptedRead LOCKED = new ScriptedRead(null, true);
+
+        private final byte[] rawValue;
+
+        private final boolean locked;
+
+        ScriptedRead(byte[] rawValue, boolean locked) {
+            this.rawValue = rawValue;
+            this.locked = locked;
+        }
+
+        /**
+         * redis中的原始value，有写锁或未命中时为null
+         */
+        public byte[] getRawValue() {
+            return rawValue;
+        }
+
+        /**
+         * 未命中且脚本已为当前线程获取了 sync 锁
+         */
+        public boolean isLocked() {
+            return locked;
+        }
+    }
+
+    /**
+     * 版本模式读取的结果
+     */
+    public static class VersionedValue {
+
+        private final String version;
+
+        private final byte[] rawValue;
+
+        VersionedValue(String version, byte[] rawValue) {
+            this.version = version;
+            this.rawValue = rawValue;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        /**
+         * redis中的原始value，未命中时为null
+         */
+        public byte[] getRawValue() {
+            return rawValue;
+        }
+
+        /**
+         * 版本号为奇数时有删除正在进行
+         */
+        public boolean isWriting() {
+            return CacheScripts.isWriting(version);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.mcsirius.cloud.redis.support;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 缓存预热接口
+ * 实现类注册为 spring bean 后，应用启动时按批调用 load() 并把结果写入同名的 LockedCacheable 缓存，
+ * 上次停机时保存的热点key最先预热，之后是 keys() 返回的key
+ */
+public interface CacheWarmUp {
+
+    /**
+     * 缓存名称，与 LockedCacheable 的 cacheName 一致（不含 #TTL 部分），同时注册为 TTCacheManager 的初始缓存
+     */
+    String cacheName();
+
+    /**
+     * 启动时预热的key，与 LockedCacheable 的 key 表达式计算结果一致；默认为空，只预热热点key
+     */
+    default Iterable<?> keys() {
+        return List.of();
+    }
+
+    /**
+     * 批量加载数据，返回 key -> value，按 String.valueOf(key) 匹配；没有返回或value为null的key不写入缓存
+     */
+    Map<?, ?> load(List<String> keys);
+}
@@ -0,0 +1,310 @@
+package com.mcsirius.cloud.redis.support;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mcsirius.cloud.redis.annotation.LockedCacheable;
+import com.mcsirius.cloud.redis.codec.CacheCodecRegistry;
+import com.mcsirius.cloud.redis.config.LockedCacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 启动时执行 CacheWarmUp 预热缓存
+ * 按 batchSize 分批加载，最多 parallelism 个批次同时执行，每批的写入在一个pipeline中完成；
+ * 写入使用 SET NX，不覆盖已经存在的缓存（旧值副本同样如此），过期时间、编码格式和key布局与 LockedCacheable 切面相同
+ * 开启布隆过滤器的缓存在写入前把key加入过滤器，否则预热的key可能被过滤器判定为不存在
+ * 停机时把当前的热点key保存到文件，下次启动先预热这些key，再预热 keys() 返回的其他key
+ * 预热不经过读写锁和版本号，应在其他实例修改对应数据前完成，一般在发布新实例时使用
+ */
+@Slf4j
+@Component
+public class CacheWarmUpRunner implements ApplicationRunner, DisposableBean {
+
+    /**
+     * 与 LockedCacheableAspect 中的旧值副本后缀一致
+     */
+    private static final String STALE_SUFFIX = ":stale";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    private final CacheOperationMetadataRegistry metadataRegistry;
+
+    private final CacheCodecRegistry cacheCodecRegistry;
+
+    private final HotKeyDetector hotKeyDetector;
+
+    private final BloomFilterGuard bloomFilterGuard;
+
+    private final LockedCacheProperties lockedCacheProperties;
+
+    private final ObjectProvider<CacheWarmUp> warmUps;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public CacheWarmUpRunner(RedisTemplate<String, Object> redisTemplate, CacheOperationMetadataRegistry metadataRegistry,
+                             CacheCodecRegistry cacheCodecRegistry, HotKeyDetector hotKeyDetector,
+                             BloomFilterGuard bloomFilterGuard, LockedCacheProperties lockedCacheProperties,
+                             ObjectProvider<CacheWarmUp> warmUps) {
+        this.redisTemplate = redisTemplate;
+        this.metadataRegistry = metadataRegistry;
+        this.cacheCodecRegistry = cacheCodecRegistry;
+        this.hotKeyDetector = hotKeyDetector;
+        this.bloomFilterGuard = bloomFilterGuard;
+        this.lockedCacheProperties = lockedCacheProperties;
+        this.warmUps = warmUps;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws InterruptedException {
+        LockedCacheProperties.WarmUp properties = lockedCacheProperties.getWarmUp();
+        if (!properties.isEnabled()) {
+            return;
+        }
+        Map<CacheWarmUp, CacheOperationMetadata<LockedCacheable>> targets = new LinkedHashMap<>();
+        warmUps.orderedStream().forEach(warmUp -> {
+            CacheOperationMetadata<LockedCacheable> metadata = metadataRegistry.find(warmUp.cacheName(), LockedCacheable.class);
+            if (metadata == null) {
+                log.warn("缓存预热跳过：{} 没有对应的 LockedCacheable 方法", warmUp.cacheName());
+            } else {
+                targets.put(warmUp, metadata);
+            }
+        });
+        if (targets.isEmpty()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        long deadline = start + properties.getTimeout().toMillis();
+        Map<String, Set<String>> hotKeys = readSnapshot(properties.getHotKeySnapshot());
+        AtomicInteger index = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(properties.getParallelism(), runnable -> {
+            Thread thread = new Thread(runnable, "locked-cache-warm-up-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Batches batches = new Batches(executor, new Semaphore(properties.getParallelism()), properties.getBatchSize(),
+                deadline);
+        try {
+            // 热点key先提交，线程池按提交顺序执行
+            for (Map.Entry<CacheWarmUp, CacheOperationMetadata<LockedCacheable>> target : targets.entrySet()) {
+                Set<String> keys = hotKeys.getOrDefault(target.getKey().cacheName(), Set.of());
+                if (!batches.submit(target.getKey(), target.getValue(), keys, Set.of())) {
+                    break;
+                }
+            }
+            int hotKeyCount = batches.submitted;
+            for (Map.Entry<CacheWarmUp, CacheOperationMetadata<LockedCacheable>> target : targets.entrySet()) {
+                Set<String> skipped = hotKeys.getOrDefault(target.getKey().cacheName(), Set.of());
+                if (!batches.submit(target.getKey(), target.getValue(), target.getKey().keys(), skipped)) {
+                    break;
+                }
+            }
+            executor.shutdown();
+            if (!batches.timedOut
+                    && executor.awaitTermination(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS)) {
+                log.info("缓存预热完成，共写入 {} 个key，其中热点key {} 个，耗时 {} ms", batches.warmed.get(), hotKeyCount,
+                        System.currentTimeMillis() - start);
+            } else {
+                log.warn("缓存预热超过 {}，已写入 {} 个key，已提交的批次在后台继续执行", properties.getTimeout(),
+                        batches.warmed.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 停机时保存当前的热点key，先写临时文件再替换，避免停机中断时留下不完整的文件
+     */
+    @Override
+    public void destroy() {
+        String file = lockedCacheProperties.getWarmUp().getHotKeySnapshot();
+        if (!StringUtils.hasText(file) || !hotKeyDetector.isEnabled()) {
+            return;
+        }
+        List<Map<String, Object>> entries = new ArrayList<>();
+        for (HotKeyDetector.HotKey hotKey : hotKeyDetector.snapshot()) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("cacheName", hotKey.getCacheName());
+            entry.put("key", hotKey.getKey());
+            entry.put("count", hotKey.getCount());
+            entries.add(entry);
+        }
+        Path path = Path.of(file);
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            objectMapper.writeValue(temp.toFile(), entries);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("保存了 {} 个热点key：{}", entries.size(), path);
+        } catch (IOException e) {
+            log.warn("保存热点key失败：{}", path, e);
+        }
+    }
+
+    /**
+     * 读取上次停机时保存的热点key，返回 缓存名 -> key，key按访问次数从高到低排列
+     */
+    private Map<String, Set<String>> readSnapshot(String file) {
+        Map<String, Set<String>> hotKeys = new HashMap<>();
+        if (!StringUtils.hasText(file) || !Files.exists(Path.of(file))) {
+            return hotKeys;
+        }
+        try {
+            List<Map<String, Object>> entries = objectMapper.readValue(Path.of(file).toFile(), new TypeReference<>() {
+            });
+            for (Map<String, Object> entry : entries) {
+                hotKeys.computeIfAbsent(String.valueOf(entry.get("cacheName")), cacheName -> new LinkedHashSet<>())
+                        .add(String.valueOf(entry.get("key")));
+            }
+        } catch (IOException e) {
+            log.warn("读取热点key失败：{}", file, e);
+        }
+        return hotKeys;
+    }
+
+    /**
+     * 加载一批数据并在一个pipeline中写入，返回写入的key数量
+     */
+    @SuppressWarnings("unchecked")
+    private int warmUp(CacheWarmUp warmUp, CacheOperationMetadata<LockedCacheable> metadata, List<String> keys) {
+        Map<?, ?> values = warmUp.load(keys);
+        if (values == null || values.isEmpty()) {
+            return 0;
+        }
+        RedisSerializer<String> keySerializer = (RedisSerializer<String>) redisTemplate.getKeySerializer();
+        RedisSerializer<Object> valueSerializer = cacheCodecRegistry.serializerFor(metadata.getCacheName());
+        boolean staleWhileError = metadata.getAnnotation().staleWhileError();
+        Expiration staleExpiration = Expiration.from(lockedCacheProperties.getStaleWhileError().getStaleTimeToLive());
+        List<String> loadedKeys = new ArrayList<>(values.size());
+        List<String> names = new ArrayList<>(values.size());
+        List<byte[]> rawValues = new ArrayList<>(values.size());
+        List<Expiration> expirations = new ArrayList<>(values.size());
+        values.forEach((key, value) -> {
+            if (value == null) {
+                return;
+            }
+            // 每个key单独计算TTL，同一批预热的key过期时间被打散
+            Duration ttl = metadata.getTtlPolicy().nextTtl();
+            loadedKeys.add(String.valueOf(key));
+            names.add(metadata.resolveName(String.valueOf(key)));
+            rawValues.add(valueSerializer.serialize(value));
+            expirations.add(ttl != null ? Expiration.from(ttl) : Expiration.persistent());
+        });
+        LockedCacheable annotation = metadata.getAnnotation();
+        if (annotation.bloomFilter()) {
+            bloomFilterGuard.putAll(metadata.getCacheName(), loadedKeys, annotation.expectedInsertions(),
+                    annotation.falseProbability());
+        }
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (int i = 0; i < names.size(); i++) {
+                connection.stringCommands().set(keySerializer.serialize(names.get(i)), rawValues.get(i),
+                        expirations.get(i), RedisStringCommands.SetOption.ifAbsent());
+                if (staleWhileError) {
+                    connection.stringCommands().set(keySerializer.serialize(names.get(i) + STALE_SUFFIX),
+                            rawValues.get(i), staleExpiration, RedisStringCommands.SetOption.ifAbsent());
+                }
+            }
+            return null;
+        });
+        return names.size();
+    }
+
+    /**
+     * 按批提交预热任务，同时执行的批次数由信号量限制，keys() 按需遍历，不会一次性把全部key放进队列
+     */
+    private class Batches {
+
+        private final ExecutorService executor;
+
+        private final Semaphore permits;
+
+        private final int batchSize;
+
+        private final long deadline;
+
+        private final AtomicInteger warmed = new AtomicInteger();
+
+        /**
+         * 已提交的key数量，只在启动线程中修改
+         */
+        private int submitted;
+
+        private boolean timedOut;
+
+        Batches(ExecutorService executor, Semaphore permits, int batchSize, long deadline) {
+            this.executor = executor;
+            this.permits = permits;
+            this.batchSize = batchSize;
+            this.deadline = deadline;
+        }
+
+        /**
+         * 提交全部key，超时返回false
+         */
+        boolean submit(CacheWarmUp warmUp, CacheOperationMetadata<LockedCacheable> metadata, Iterable<?> keys,
+                       Set<String> skipped) throws InterruptedException {
+            List<String> batch = new ArrayList<>(batchSize);
+            for (Object key : keys) {
+                String value = String.valueOf(key);
+                if (skipped.contains(value)) {
+                    continue;
+                }
+                batch.add(value);
+                if (batch.size() >= batchSize) {
+                    if (!submit(warmUp, metadata, batch)) {
+                        return false;
+                    }
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            return batch.isEmpty() || submit(warmUp, metadata, batch);
+        }
+
+        private boolean submit(CacheWarmUp warmUp, CacheOperationMetadata<LockedCacheable> metadata, List<String> batch)
+                throws InterruptedException {
+            if (timedOut
+                    || !permits.tryAcquire(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS)) {
+                timedOut = true;
+                return false;
+            }
+            submitted += batch.size();
+            executor.execute(() -> {
+                try {
+                    warmed.addAndGet(warmUp(warmUp, metadata, batch));
+                } catch (Exception e) {
+                    log.warn("缓存预热失败：{}，{} 个key", warmUp.cacheName(), batch.size(), e);
+                } finally {
+                    permits.release();
+                }
+            });
+            return true;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.mcsirius.cloud.redis.support;
+
+import com.mcsirius.cloud.redis.config.LockedCacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBlockingQueue;
+import org.redisson.api.RDelayedQueue;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 延迟双删的调度器
+ * 所有的第二次删除共用一个调度线程，同一个key在等待期内重复提交只会删除一次，到期的key合并成一批删除
+ * 开启 durable 后待删除的key保存在 redisson 延迟队列中，实例重启后仍会被执行；
+ * 提交只更新内存中的到期时间，由调度线程每个 tick 把新增或延后的key异步入队一次，写入频繁的key每个 tick 最多入队一次
+ * 队列可能由其他实例消费，不能依赖本实例内存中的到期时间；已入队且到期的记录由调度线程清理
+ */
+@Slf4j
+@Component
+public class DelayedEvictScheduler implements DisposableBean {
+
+    private final KeyEvictor keyEvictor;
+
+    private final NearCache nearCache;
+
+    private final LockedCacheProperties lockedCacheProperties;
+
+    /**
+     * 等待删除的key及其到期时间
+     */
+    private final Map<String, Deadline> pending = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService executor;
+
+    private final RBlockingQueue<String> queue;
+
+    private final RDelayedQueue<String> delayedQueue;
+
+    private volatile boolean running = true;
+
+    public DelayedEvictScheduler(KeyEvictor keyEvictor, NearCache nearCache, RedissonClient redissonClient,
+                                 LockedCacheProperties lockedCacheProperties) {
+        this.keyEvictor = keyEvictor;
+        this.nearCache = nearCache;
+        this.lockedCacheProperties = lockedCacheProperties;
+        LockedCacheProperties.DelayedEvict delayedEvict = lockedCacheProperties.getDelayedEvict();
+        AtomicInteger index = new AtomicInteger();
+        // durable 模式下一个线程入队和清理，另一个线程阻塞消费队列
+        this.executor = Executors.newScheduledThreadPool(delayedEvict.isDurable() ? 2 : 1, runnable -> {
+            Thread thread = new Thread(runnable, "locked-cache-delayed-evict-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        long tick = delayedEvict.getTickInterval().toMillis();
+        if (delayedEvict.isDurable()) {
+            this.queue = redissonClient.getBlockingQueue(delayedEvict.getQueueName(), StringCodec.INSTANCE);
+            this.delayedQueue = redissonClient.getDelayedQueue(queue);
+            this.executor.execute(this::consume);
+            this.executor.scheduleWithFixedDelay(this::offer, tick, tick, TimeUnit.MILLISECONDS);
+        } else {
+            this.queue = null;
+            this.delayedQueue = null;
+            this.executor.scheduleWithFixedDelay(this::tick, tick, tick, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 提交一次延迟删除，同一个key在等待期内只保留一个任务，到期时间取最晚的一次
+     * 不访问redis；durable 模式下到期时间延后时由调度线程再入队一次，较早的任务到期时由本实例跳过，或由其他实例提前多删一次
+     */
+    public void schedule(String name, long delayMillis) {
+        long deadline = System.currentTimeMillis() + delayMillis;
+        pending.compute(name, (key, previous) ->
+                previous == null || deadline > previous.at ? new Deadline(deadline, false) : previous);
+    }
+
+    private void tick() {
+        try {
+            long now = System.currentTimeMillis();
+            List<String> batch = new ArrayList<>();
+            pending.forEach((name, deadline) -> {
+                if (deadline.at <= now && pending.remove(name, deadline)) {
+                    batch.add(name);
+                }
+            });
+            flush(batch);
+        } catch (Exception e) {
+            log.error("延迟删除缓存失败", e);
+        }
+    }
+
+    /**
+     * durable 模式：把新增或延后的key异步入队，清理已入队且到期的记录（对应的任务可能已被其他实例消费）
+     */
+    private void offer() {
+        try {
+            long now = System.currentTimeMillis();
+            pending.forEach((name, deadline) -> {
+                if (!deadline.offered) {
+                    Deadline offered = new Deadline(deadline.at, true);
+                    if (pending.replace(name, deadline, offered)) {
+                        delayedQueue.offerAsync(name, Math.max(deadline.at - now, 0), TimeUnit.MILLISECONDS)
+                                .whenComplete((result, e) -> {
+                                    if (e != null) {
+                                        // 下一个 tick 重试
+                                        pending.replace(name, offered, deadline);
+                                        log.warn("延迟删除任务入队失败：{}", name, e);
+                                    }
+                                });
+                    }
+                } else if (deadline.at <= now) {
+                    pending.remove(name, deadline);
+                }
+            });
+        } catch (Exception e) {
+            log.error("延迟删除任务入队失败", e);
+        }
+    }
+
+    private void consume() {
+        int batchSize = lockedCacheProperties.getEvict().getBatchSize();
+        while (running) {
+            try {
+                String first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                List<String> names = new ArrayList<>(queue.poll(batchSize - 1));
+                names.add(first);
+                long now = System.currentTimeMillis();
+                long tick = lockedCacheProperties.getDelayedEvict().getTickInterval().toMillis();
+                Set<String> batch = new LinkedHashSet<>(names.size());
+                for (String name : names) {
+                    Deadline deadline = pending.get(name);
+                    // 等待期内又有新的提交，按新的到期时间入队；相差不到一个 tick 的（如时钟误差）直接删除，避免漏删
+                    if (deadline != null && deadline.at > now + tick) {
+                        continue;
+                    }
+                    if (deadline != null) {
+                        pending.remove(name, deadline);
+                    }
+                    batch.add(name);
+                }
+                flush(new ArrayList<>(batch));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("延迟删除缓存失败", e);
+            }
+        }
+    }
+
+    private void flush(List<String> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        keyEvictor.evictAll(batch);
+        batch.forEach(nearCache::invalidate);
+        log.debug("延迟删除缓存完毕：{}", batch);
+    }
+
+    @Override
+    public void destroy() {
+        running = false;
+        executor.shutdownNow();
+        if (delayedQueue != null) {
+            // 还未入队的任务在停机前入队，重启后仍会执行
+            long now = System.currentTimeMillis();
+            pending.forEach((name, deadline) -> {
+                if (!deadline.offered) {
+                    try {
+                        delayedQueue.offer(name, Math.max(deadline.at - now, 0), TimeUnit.MILLISECONDS);
+                    } catch (Exception e) {
+                        log.warn("延迟删除任务入队失败：{}", name, e);
+                    }
+                }
+            });
+            delayedQueue.destroy();
+        }
+    }
+
+    /**
+     * 到期时间，以及 durable 模式下是否已按该时间入队
+     */
+    private static final class Deadline {
+
+        private final long at;
+
+        private final boolean offered;
+
+        Deadline(long at, boolean offered) {
+            this.at = at;
+            this.offered = offered;
+        }
+    }
+}
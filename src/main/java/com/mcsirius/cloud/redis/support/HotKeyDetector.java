@@ -0,0 +1,214 @@
+package com.mcsirius.cloud.redis.support;
+
+import com.mcsirius.cloud.redis.config.LockedCacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 热点key检测
+ * 用两个 count-min sketch 统计当前窗口和上一个窗口的访问次数，按滑动窗口估算最近一个窗口内的访问次数，
+ * 超过阈值的key判定为热点，由切面在本地缓存中保留一个短时间的副本，减少对单个redis分片的读锁和读取
+ * sketch 的计数不加锁，并发时可能少计几次，只用于判断数量级
+ * 开启 spring.jmx.enabled 后可以通过 JMX 查看当前的热点key，停机时由 CacheWarmUpRunner 保存下来供下次启动预热
+ */
+@Slf4j
+@Component
+@ManagedResource(objectName = "com.mcsirius.cloud.redis:type=HotKeyDetector", description = "缓存热点key")
+public class HotKeyDetector {
+
+    private static final int DEPTH = 4;
+
+    private static final Comparator<HotKey> BY_COUNT = Comparator.comparingLong((HotKey hotKey) -> hotKey.count).reversed();
+
+    private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+    private final LockedCacheProperties.HotKey properties;
+
+    private final int mask;
+
+    private final long windowMillis;
+
+    /**
+     * 当前的热点key，key为redis中的完整名称
+     */
+    private final Map<String, HotKey> hotKeys = new ConcurrentHashMap<>();
+
+    private volatile Window window;
+
+    public HotKeyDetector(LockedCacheProperties lockedCacheProperties) {
+        this.properties = lockedCacheProperties.getHotKey();
+        int width = Integer.highestOneBit(Math.max(properties.getWidth() - 1, 1)) << 1;
+        this.mask = width - 1;
+        this.windowMillis = properties.getWindow().toMillis();
+        this.window = new Window(new int[DEPTH * width], new int[DEPTH * width], System.currentTimeMillis());
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * 记录一次访问，返回该key当前是否为热点
+     * @param name redis中的完整名称
+     * @param cacheName 缓存名
+     * @param key 逻辑key，未配置key时为null
+     */
+    public boolean record(String name, String cacheName, String key) {
+        if (!properties.isEnabled()) {
+            return false;
+        }
+        Window current = currentWindow();
+        int hash = spread(name.hashCode());
+        int count = Integer.MAX_VALUE;
+        int previous = Integer.MAX_VALUE;
+        for (int i = 0; i < DEPTH; i++) {
+            int index = i * (mask + 1) + index(hash, i);
+            count = Math.min(count, ++current.counts[index]);
+            previous = Math.min(previous, current.previous[index]);
+        }
+        // 滑动窗口：上一个窗口的计数按剩余比例折算
+        double remaining = 1 - (double) (System.currentTimeMillis() - current.start) / windowMillis;
+        long estimate = count + (long) (previous * Math.max(remaining, 0));
+        if (estimate < properties.getThreshold()) {
+            return false;
+        }
+        HotKey hotKey = hotKeys.get(name);
+        if (hotKey != null) {
+            hotKey.count = estimate;
+        } else if (hotKeys.size() < properties.getMaximumReported()
+                && hotKeys.putIfAbsent(name, new HotKey(cacheName, key, estimate)) == null) {
+            log.info("发现热点key：{}，最近 {} 内访问约 {} 次", name, properties.getWindow(), estimate);
+        }
+        return true;
+    }
+
+    /**
+     * 热点key在本地缓存中的存活时间，不超过redis中的TTL
+     */
+    public Duration replicaTimeToLive(Duration duration) {
+        Duration replicaTimeToLive = properties.getReplicaTimeToLive();
+        return duration != null && duration.compareTo(replicaTimeToLive) < 0 ? duration : replicaTimeToLive;
+    }
+
+    /**
+     * 当前的热点key，按访问次数从高到低排列
+     */
+    @ManagedAttribute(description = "热点key及最近一个窗口内的访问次数")
+    public Map<String, Long> getHotKeys() {
+        currentWindow();
+        Map<String, Long> report = new LinkedHashMap<>();
+        hotKeys.entrySet().stream()
+                .sorted(Map.Entry.comparingByValue(BY_COUNT))
+                .forEach(entry -> report.put(entry.getKey(), entry.getValue().count));
+        return report;
+    }
+
+    /**
+     * 当前热点key的缓存名和逻辑key，按访问次数从高到低排列，不包含未配置key的缓存
+     */
+    public List<HotKey> snapshot() {
+        currentWindow();
+        return hotKeys.values().stream()
+                .filter(hotKey -> hotKey.key != null)
+                .sorted(BY_COUNT)
+                .toList();
+    }
+
+    /**
+     * 窗口到期时由一个线程切换窗口：当前窗口成为上一个窗口，并清理已经不热的key
+     */
+    private Window currentWindow() {
+        Window current = window;
+        long now = System.currentTimeMillis();
+        if (now - current.start < windowMillis) {
+            return current;
+        }
+        synchronized (this) {
+            current = window;
+            if (now - current.start < windowMillis) {
+                return current;
+            }
+            // 超过两个窗口没有访问时上一个窗口的计数也已失效
+            int[] previous = now - current.start < 2 * windowMillis ? current.counts : new int[current.counts.length];
+            current = new Window(new int[current.counts.length], previous, now);
+            window = current;
+            hotKeys.keySet().removeIf(name -> estimate(name, previous) < properties.getThreshold());
+            return current;
+        }
+    }
+
+    private long estimate(String name, int[] counts) {
+        int hash = spread(name.hashCode());
+        int count = Integer.MAX_VALUE;
+        for (int i = 0; i < DEPTH; i++) {
+            count = Math.min(count, counts[i * (mask + 1) + index(hash, i)]);
+        }
+        return count;
+    }
+
+    private int index(int hash, int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h += h >>> 32;
+        return (int) h & mask;
+    }
+
+    private static int spread(int hash) {
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        return (hash >>> 16) ^ hash;
+    }
+
+    public static class HotKey {
+
+        private final String cacheName;
+
+        private final String key;
+
+        /**
+         * 最近一次估算的访问次数
+         */
+        private volatile long count;
+
+        HotKey(String cacheName, String key, long count) {
+            this.cacheName = cacheName;
+            this.key = key;
+            this.count = count;
+        }
+
+        public String getCacheName() {
+            return cacheName;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public long getCount() {
+            return count;
+        }
+    }
+
+    private static class Window {
+
+        private final int[] counts;
+
+        private final int[] previous;
+
+        private final long start;
+
+        Window(int[] counts, int[] previous, long start) {
+            this.counts = counts;
+            this.previous = previous;
+            this.start = start;
+        }
+    }
+}
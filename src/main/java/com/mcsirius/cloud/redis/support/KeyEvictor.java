@@ -0,0 +1,177 @@
+package com.mcsirius.cloud.redis.support;
+
+import com.mcsirius.cloud.redis.config.LockedCacheProperties;
+import org.redisson.api.RedissonClient;
+import org.springframework.data.redis.connection.ClusterSlotHashUtil;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisClusterNode;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 流式删除redis缓存
+ * 精确的key直接 UNLINK，带通配符的key使用 SCAN 游标分批遍历并 UNLINK，避免 KEYS 阻塞redis
+ * 集群模式下逐个遍历主节点，内存中最多只保留一批key
+ * 异步删除时精确的key使用 redisson 的异步 UNLINK，通配符删除在 CacheAsyncExecutor 中执行
+ */
+@Component
+public class KeyEvictor {
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final RedissonClient redissonClient;
+
+    private final CacheAsyncExecutor asyncExecutor;
+
+    private final LockedCacheProperties.Evict evictProperties;
+
+    public KeyEvictor(StringRedisTemplate stringRedisTemplate, RedissonClient redissonClient,
+                      CacheAsyncExecutor asyncExecutor, LockedCacheProperties lockedCacheProperties) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.redissonClient = redissonClient;
+        this.asyncExecutor = asyncExecutor;
+        this.evictProperties = lockedCacheProperties.getEvict();
+    }
+
+    /**
+     * 删除匹配的key
+     * @param pattern 精确的key或带通配符的模式
+     * @return 删除的key数量
+     */
+    public long evict(String pattern) {
+        if (!isPattern(pattern)) {
+            Long count = stringRedisTemplate.execute((RedisCallback<Long>) connection ->
+                    connection.keyCommands().unlink(rawKey(pattern)));
+            return count != null ? count : 0;
+        }
+        Long count = stringRedisTemplate.execute((RedisCallback<Long>) connection -> scanAndUnlink(connection, pattern));
+        return count != null ? count : 0;
+    }
+
+    /**
+     * evict 的异步版本
+     * @return 删除的key数量
+     */
+    public CompletableFuture<Long> evictAsync(String pattern) {
+        if (!isPattern(pattern)) {
+            return redissonClient.getKeys().unlinkAsync(pattern).toCompletableFuture();
+        }
+        return asyncExecutor.supply(() -> evict(pattern));
+    }
+
+    /**
+     * 批量删除，精确的key按批合并为多key的 UNLINK，带通配符的key逐个扫描删除
+     * @return 删除的key数量
+     */
+    public long evictAll(Collection<String> names) {
+        long count = 0;
+        List<byte[]> exactKeys = new ArrayList<>(names.size());
+        for (String name : names) {
+            if (isPattern(name)) {
+                count += evict(name);
+            } else {
+                exactKeys.add(rawKey(name));
+            }
+        }
+        if (exactKeys.isEmpty()) {
+            return count;
+        }
+        Long deleted = stringRedisTemplate.execute((RedisCallback<Long>) connection -> {
+            boolean cluster = connection instanceof RedisClusterConnection;
+            int batchSize = evictProperties.getBatchSize();
+            long total = 0;
+            for (int from = 0; from < exactKeys.size(); from += batchSize) {
+                List<byte[]> batch = new ArrayList<>(exactKeys.subList(from, Math.min(from + batchSize, exactKeys.size())));
+                total += flush(connection, batch, cluster);
+            }
+            return total;
+        });
+        return count + (deleted != null ? deleted : 0);
+    }
+
+    private long scanAndUnlink(RedisConnection connection, String pattern) {
+        ScanOptions options = ScanOptions.scanOptions().match(pattern).count(evictProperties.getScanCount()).build();
+        if (connection instanceof RedisClusterConnection clusterConnection) {
+            long count = 0;
+            for (RedisClusterNode node : clusterConnection.clusterGetNodes()) {
+                if (node.isMaster()) {
+                    try (Cursor<byte[]> cursor = clusterConnection.scan(node, options)) {
+                        count += unlink(connection, cursor, true);
+                    }
+                }
+            }
+            return count;
+        }
+        try (Cursor<byte[]> cursor = connection.keyCommands().scan(options)) {
+            return unlink(connection, cursor, false);
+        }
+    }
+
+    private long unlink(RedisConnection connection, Cursor<byte[]> cursor, boolean cluster) {
+        int batchSize = evictProperties.getBatchSize();
+        List<byte[]> batch = new ArrayList<>(batchSize);
+        long count = 0;
+        while (cursor.hasNext()) {
+            batch.add(cursor.next());
+            if (batch.size() >= batchSize) {
+                count += flush(connection, batch, cluster);
+            }
+        }
+        return count + flush(connection, batch, cluster);
+    }
+
+    private long flush(RedisConnection connection, List<byte[]> batch, boolean cluster) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        long count = 0;
+        if (cluster) {
+            // 集群模式下多key命令要求在同一个槽，按槽分组，各组的 UNLINK 在当前连接上通过管道一起发送
+            // 管道在两次读取游标之间打开和关闭，不影响 SCAN，也不需要再借用一个连接
+            Map<Integer, List<byte[]>> slots = new HashMap<>();
+            for (byte[] key : batch) {
+                slots.computeIfAbsent(ClusterSlotHashUtil.calculateSlot(key), slot -> new ArrayList<>()).add(key);
+            }
+            connection.openPipeline();
+            try {
+                for (List<byte[]> keys : slots.values()) {
+                    connection.keyCommands().unlink(keys.toArray(new byte[0][]));
+                }
+            } catch (RuntimeException e) {
+                connection.closePipeline();
+                throw e;
+            }
+            for (Object deleted : connection.closePipeline()) {
+                count += deleted instanceof Long number ? number : 0;
+            }
+        } else {
+            Long deleted = connection.keyCommands().unlink(batch.toArray(new byte[0][]));
+            count += deleted != null ? deleted : 0;
+        }
+        batch.clear();
+        return count;
+    }
+
+    /**
+     * 是否是带通配符的模式
+     */
+    public static boolean isPattern(String name) {
+        return name.indexOf('*') >= 0 || name.indexOf('?') >= 0 || name.indexOf('[') >= 0;
+    }
+
+    private static byte[] rawKey(String name) {
+        return name.getBytes(StandardCharsets.UTF_8);
+    }
+}
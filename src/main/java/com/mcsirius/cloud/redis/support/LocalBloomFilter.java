@@ -0,0 +1,57 @@
+package com.mcsirius.cloud.redis.support;
+
+import cn.hutool.core.lang.hash.MurmurHash;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 进程内的布隆过滤器，作为redis布隆过滤器的本地副本
+ * 只记录已确认存在的key，因此判定不存在时仍需回查redis
+ */
+public class LocalBloomFilter {
+
+    private final AtomicLongArray bits;
+
+    private final long bitSize;
+
+    private final int hashIterations;
+
+    public LocalBloomFilter(long expectedInsertions, double falseProbability) {
+        long size = (long) (-expectedInsertions * Math.log(falseProbability) / (Math.log(2) * Math.log(2)));
+        this.bitSize = Math.max(64, size);
+        this.hashIterations = Math.max(1, (int) Math.round((double) bitSize / expectedInsertions * Math.log(2)));
+        this.bits = new AtomicLongArray((int) ((bitSize + 63) >>> 6));
+    }
+
+    public boolean mightContain(String key) {
+        long[] hash = MurmurHash.hash128(key);
+        for (int i = 0; i < hashIterations; i++) {
+            long index = index(hash, i);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void put(String key) {
+        long[] hash = MurmurHash.hash128(key);
+        for (int i = 0; i < hashIterations; i++) {
+            long index = index(hash, i);
+            int slot = (int) (index >>> 6);
+            long mask = 1L << index;
+            long current;
+            do {
+                current = bits.get(slot);
+                if ((current & mask) != 0) {
+                    break;
+                }
+            } while (!bits.compareAndSet(slot, current, current | mask));
+        }
+    }
+
+    // 双重哈希：h1 + i * h2
+    private long index(long[] hash, int i) {
+        return ((hash[0] + i * hash[1]) & Long.MAX_VALUE) % bitSize;
+    }
+}
@@ -0,0 +1,40 @@
+package com.mcsirius.cloud.redis.support;
+
+import com.mcsirius.cloud.redis.config.LockedCacheProperties;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 等待锁时每一轮的等待时间
+ * 锁释放时 redisson 会通过 pub/sub 立即唤醒等待者，这里的等待时间只是兜底的重新检查间隔，
+ * 按指数增长并加入随机抖动，避免大量等待者同时重试；总等待时间不超过配置的超时时间
+ */
+public class LockBackoff {
+
+    private final long deadline;
+
+    private final long maxBackoff;
+
+    private long backoff;
+
+    public LockBackoff(LockedCacheProperties.Lock lock) {
+        this.deadline = System.currentTimeMillis() + lock.getWaitTimeout().toMillis();
+        this.backoff = Math.max(1, lock.getInitialBackoff().toMillis());
+        this.maxBackoff = Math.max(backoff, lock.getMaxBackoff().toMillis());
+    }
+
+    /**
+     * 下一轮的等待时间（毫秒），已超时返回-1
+     */
+    public long nextWait() {
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+            return -1;
+        }
+        // 一半固定一半随机
+        long half = backoff / 2;
+        long wait = half + ThreadLocalRandom.current().nextLong(backoff - half + 1);
+        backoff = Math.min(backoff * 2, maxBackoff);
+        return Math.min(wait, remaining);
+    }
+}
@@ -0,0 +1,542 @@
+package com.mcsirius.cloud.redis.support;
+
+import cn.hutool.core.lang.hash.MurmurHash;
+import com.mcsirius.cloud.redis.config.LockedCacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.PatternMatchUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * TTCacheManager 大value的本地磁盘缓存，保存序列化后的字节，与编码格式无关
+ * 数据顺序追加到一组循环使用的内存映射段文件中，写满一段后切换到下一段，回收其中最旧的数据；
+ * 读取较旧段中的数据时把它复制到当前段，经常读取的数据不会被回收，效果接近 LRU
+ * 索引是堆外的开放寻址哈希表，每个槽位保存 key 的哈希、过期时间和数据位置，value 和 key 都不占用堆内存
+ * 过期时间与redis中的key一致，修改和删除缓存时通过 redis 频道通知其他实例失效
+ * 每个实例使用配置目录下以实例id命名的子目录，并持有同名 .lock 文件的文件锁；启动时清理锁已释放（实例已停止或崩溃）的子目录
+ */
+@Slf4j
+@Component
+public class MappedDiskTier implements DisposableBean {
+
+    /**
+     * 槽位：哈希(8) + 过期时间(8) + 段号(4) + 段内偏移(4) + key长度(4) + value长度(4)
+     */
+    private static final int SLOT_SIZE = 32;
+
+    private static final long EMPTY = 0;
+
+    private static final long DELETED = 1;
+
+    /**
+     * 段内的数据：key长度(4) + value长度(4) + key + value
+     */
+    private static final int RECORD_HEADER = 8;
+
+    /**
+     * 失效序号的分段数，必须是2的幂
+     */
+    private static final int SEQUENCE_STRIPES = 256;
+
+    private final LockedCacheProperties.DiskTier properties;
+
+    /**
+     * 区分失效通知是否由当前实例发出
+     */
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Path directory;
+
+    /**
+     * 持有期间其他实例不会清理当前实例的目录
+     */
+    private final FileChannel lockChannel;
+
+    /**
+     * 按key哈希分段的失效序号，写入和删除时加一；从redis读取后回填本地时序号已变化则放弃回填
+     */
+    private final AtomicLongArray sequences = new AtomicLongArray(SEQUENCE_STRIPES);
+
+    private final int segmentSize;
+
+    private final MappedByteBuffer[] segments;
+
+    private final int maximumEntries;
+
+    private final RTopic topic;
+
+    /**
+     * 当前写入的段和段内位置
+     */
+    private int active;
+
+    private int position;
+
+    private ByteBuffer index;
+
+    private int mask;
+
+    private int size;
+
+    private int deleted;
+
+    private volatile boolean closed;
+
+    public MappedDiskTier(RedissonClient redissonClient, LockedCacheProperties lockedCacheProperties) {
+        this.properties = lockedCacheProperties.getDiskTier();
+        Path root = Path.of(properties.getDirectory());
+        this.directory = root.resolve(instanceId);
+        this.segmentSize = (int) Math.min(properties.getSegmentSize().toBytes(), Integer.MAX_VALUE);
+        this.maximumEntries = properties.getMaximumEntries();
+        if (!properties.isEnabled()) {
+            this.segments = new MappedByteBuffer[0];
+            this.lockChannel = null;
+            this.topic = null;
+            this.closed = true;
+            return;
+        }
+        int count = (int) Math.max(2, properties.getMaximumSize().toBytes() / segmentSize);
+        this.segments = new MappedByteBuffer[count];
+        // 至少保留一半空槽位，探测链不会太长
+        int capacity = Integer.highestOneBit(Math.max(maximumEntries * 2 - 1, 1)) << 1;
+        this.index = ByteBuffer.allocateDirect(capacity * SLOT_SIZE);
+        this.mask = capacity - 1;
+        try {
+            Files.createDirectories(root);
+            deleteAbandoned(root);
+            // 先锁定再创建目录，其他实例看到目录时锁一定已被持有
+            this.lockChannel = FileChannel.open(lockFile(root, instanceId), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE);
+            this.lockChannel.lock();
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("创建磁盘缓存目录失败：" + directory, e);
+        }
+        this.topic = redissonClient.getTopic(properties.getInvalidationTopic(), StringCodec.INSTANCE);
+        this.topic.addListener(String.class, (channel, message) -> onInvalidation(message));
+        log.info("磁盘缓存目录：{}，{} 个段，每段 {}", directory, count, properties.getSegmentSize());
+    }
+
+    /**
+     * 缓存是否使用磁盘缓存
+     */
+    public boolean isEnabled(String cacheName) {
+        Set<String> caches = properties.getCaches();
+        return properties.isEnabled() && (caches.isEmpty() || caches.contains(cacheName));
+    }
+
+    /**
+     * value是否需要保存到磁盘：小value直接读redis，超过一段的value无法保存
+     */
+    public boolean accepts(byte[] key, byte[] value) {
+        return value.length >= properties.getMinimumSize().toBytes()
+                && (long) RECORD_HEADER + key.length + value.length <= segmentSize;
+    }
+
+    /**
+     * 读取磁盘缓存，不存在或已过期时返回null
+     */
+    @Nullable
+    public byte[] get(byte[] key) {
+        if (closed) {
+            return null;
+        }
+        long hash = hash(key);
+        byte[] value;
+        long expireAt;
+        int segment;
+        int offset;
+        lock.readLock().lock();
+        try {
+            int slot = find(key, hash);
+            if (slot < 0) {
+                return null;
+            }
+            // 过期的数据在覆盖、删除或回收所在段时清理
+            expireAt = index.getLong(slot + 8);
+            if (expireAt != 0 && expireAt <= System.currentTimeMillis()) {
+                return null;
+            }
+            segment = index.getInt(slot + 16);
+            offset = index.getInt(slot + 20);
+            value = new byte[index.getInt(slot + 28)];
+            segments[segment].get(offset + RECORD_HEADER + key.length, value);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (age(segment) >= segments.length / 2) {
+            promote(key, hash, value, expireAt, segment, offset);
+        }
+        return value;
+    }
+
+    /**
+     * 当前的失效序号，从redis读取之前获取，回填时传给 {@link #populate}
+     */
+    public long sequence(byte[] key) {
+        return sequences.get(stripe(hash(key)));
+    }
+
+    /**
+     * 写入磁盘缓存，redis中的数据被修改后调用
+     * @param timeToLive 与redis中的key相同的存活时间，为null时不过期
+     */
+    public void put(byte[] key, byte[] value, @Nullable Duration timeToLive) {
+        write(key, value, timeToLive, -1);
+    }
+
+    /**
+     * 把从redis读到的数据回填到磁盘缓存，读取之后key被修改或删除过（失效序号变化）时放弃回填，避免旧值覆盖新值
+     * @param sequence 读取redis之前 {@link #sequence} 的返回值
+     */
+    public void populate(byte[] key, byte[] value, @Nullable Duration timeToLive, long sequence) {
+        write(key, value, timeToLive, sequence);
+    }
+
+    /**
+     * @param sequence 回填时读取前的失效序号，修改时为-1
+     */
+    private void write(byte[] key, byte[] value, @Nullable Duration timeToLive, long sequence) {
+        if (closed || !accepts(key, value)) {
+            return;
+        }
+        long expireAt = timeToLive != null ? System.currentTimeMillis() + timeToLive.toMillis() : 0;
+        long hash = hash(key);
+        lock.writeLock().lock();
+        try {
+            int stripe = stripe(hash);
+            if (sequence < 0) {
+                sequences.incrementAndGet(stripe);
+            } else if (sequences.get(stripe) != sequence) {
+                return;
+            }
+            append(key, hash, value, expireAt);
+        } catch (UncheckedIOException e) {
+            log.warn("写入磁盘缓存失败", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 删除本地的磁盘缓存
+     */
+    public void evict(byte[] key) {
+        if (closed) {
+            return;
+        }
+        long hash = hash(key);
+        lock.writeLock().lock();
+        try {
+            sequences.incrementAndGet(stripe(hash));
+            int slot = find(key, hash);
+            if (slot >= 0) {
+                delete(slot);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 按通配符删除本地的磁盘缓存，与 RedisCache#clear 使用的 pattern 相同
+     */
+    public void evictMatching(String pattern) {
+        if (closed) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            for (int stripe = 0; stripe < SEQUENCE_STRIPES; stripe++) {
+                sequences.incrementAndGet(stripe);
+            }
+            for (int slot = 0; slot < index.capacity(); slot += SLOT_SIZE) {
+                if (isLive(index.getLong(slot)) && PatternMatchUtils.simpleMatch(pattern, keyAt(slot))) {
+                    delete(slot);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 通知其他实例失效key，redis中的数据被修改或删除后调用
+     */
+    public void publish(byte[] key) {
+        publish("K", new String(key, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 通知其他实例按通配符失效
+     */
+    public void publishPattern(String pattern) {
+        publish("P", pattern);
+    }
+
+    @Override
+    public void destroy() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            closed = true;
+            // 映射在段对象被回收前仍然有效，删除文件只是释放目录项
+            FileSystemUtils.deleteRecursively(directory);
+            lockChannel.close();
+            Files.deleteIfExists(lockFile(directory.getParent(), instanceId));
+        } catch (IOException e) {
+            log.warn("删除磁盘缓存目录失败：{}", directory, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 删除锁已释放的实例目录：实例停止时没能清理（如崩溃），其中的数据可能已经在redis中修改过
+     */
+    private static void deleteAbandoned(Path root) throws IOException {
+        try (Stream<Path> children = Files.list(root)) {
+            for (Path child : children.filter(Files::isDirectory).toList()) {
+                Path lockFile = lockFile(root, child.getFileName().toString());
+                try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                     FileLock held = channel.tryLock()) {
+                    if (held == null) {
+                        continue;
+                    }
+                    FileSystemUtils.deleteRecursively(child);
+                } catch (OverlappingFileLockException e) {
+                    // 同一个进程中的其他实例正在使用
+                    continue;
+                }
+                Files.deleteIfExists(lockFile);
+                log.info("删除已停止实例的磁盘缓存目录：{}", child);
+            }
+        }
+    }
+
+    private static Path lockFile(Path root, String instanceId) {
+        return root.resolve(instanceId + ".lock");
+    }
+
+    private void publish(String type, String key) {
+        if (topic == null) {
+            return;
+        }
+        // 通知失败时其他实例的磁盘缓存会在redis TTL到期后过期
+        topic.publishAsync(instanceId + '|' + type + '|' + key).whenComplete((receivers, e) -> {
+            if (e != null) {
+                log.warn("发布磁盘缓存失效通知失败：{}", key, e);
+            }
+        });
+    }
+
+    private void onInvalidation(String message) {
+        String[] parts = message.split("\\|", 3);
+        if (parts.length < 3 || instanceId.equals(parts[0])) {
+            return;
+        }
+        if ("P".equals(parts[1])) {
+            evictMatching(parts[2]);
+        } else {
+            evict(parts[2].getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * 较旧段中被读取的数据复制到当前段，回收旧段时不会被淘汰
+     */
+    private void promote(byte[] key, long hash, byte[] value, long expireAt, int segment, int offset) {
+        lock.writeLock().lock();
+        try {
+            int slot = find(key, hash);
+            // 读取之后数据可能已被覆盖或回收
+            if (slot >= 0 && index.getInt(slot + 16) == segment && index.getInt(slot + 20) == offset) {
+                append(key, hash, value, expireAt);
+            }
+        } catch (UncheckedIOException e) {
+            log.warn("写入磁盘缓存失败", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 追加到当前段并更新索引，调用方持有写锁
+     */
+    private void append(byte[] key, long hash, byte[] value, long expireAt) {
+        int length = RECORD_HEADER + key.length + value.length;
+        if (position + length > segmentSize) {
+            // 切换到下一段，回收其中的全部数据
+            active = (active + 1) % segments.length;
+            position = 0;
+            purge(active);
+        }
+        MappedByteBuffer buffer = segment(active);
+        buffer.putInt(position, key.length);
+        buffer.putInt(position + 4, value.length);
+        buffer.put(position + RECORD_HEADER, key);
+        buffer.put(position + RECORD_HEADER + key.length, value);
+        int slot = find(key, hash);
+        if (slot < 0) {
+            // 条目数达到上限时从最旧的段开始回收
+            for (int age = segments.length - 1; size >= maximumEntries && age > 0; age--) {
+                purge((active - age + segments.length) % segments.length);
+            }
+            if (size >= maximumEntries) {
+                return;
+            }
+            if (size + deleted >= (mask + 1) * 3 / 4) {
+                rehash();
+            }
+            slot = insertionSlot(hash);
+            size++;
+        }
+        index.putLong(slot, hash);
+        index.putLong(slot + 8, expireAt);
+        index.putInt(slot + 16, active);
+        index.putInt(slot + 20, position);
+        index.putInt(slot + 24, key.length);
+        index.putInt(slot + 28, value.length);
+        position += length;
+    }
+
+    /**
+     * 查找key所在的槽位，不存在时返回-1
+     */
+    private int find(byte[] key, long hash) {
+        for (int i = 0; i <= mask; i++) {
+            int slot = (int) ((hash + i) & mask) * SLOT_SIZE;
+            long slotHash = index.getLong(slot);
+            if (slotHash == EMPTY) {
+                return -1;
+            }
+            if (slotHash == hash && index.getInt(slot + 24) == key.length && keyEquals(slot, key)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private int insertionSlot(long hash) {
+        for (int i = 0; ; i++) {
+            int slot = (int) ((hash + i) & mask) * SLOT_SIZE;
+            long slotHash = index.getLong(slot);
+            if (slotHash == EMPTY) {
+                return slot;
+            }
+            if (slotHash == DELETED) {
+                deleted--;
+                return slot;
+            }
+        }
+    }
+
+    private boolean keyEquals(int slot, byte[] key) {
+        int offset = index.getInt(slot + 20) + RECORD_HEADER;
+        return segments[index.getInt(slot + 16)].slice(offset, key.length).mismatch(ByteBuffer.wrap(key)) < 0;
+    }
+
+    private String keyAt(int slot) {
+        byte[] key = new byte[index.getInt(slot + 24)];
+        segments[index.getInt(slot + 16)].get(index.getInt(slot + 20) + RECORD_HEADER, key);
+        return new String(key, StandardCharsets.UTF_8);
+    }
+
+    private void delete(int slot) {
+        index.putLong(slot, DELETED);
+        size--;
+        deleted++;
+    }
+
+    /**
+     * 删除指向某一段的全部索引
+     */
+    private void purge(int segment) {
+        for (int slot = 0; slot < index.capacity(); slot += SLOT_SIZE) {
+            if (isLive(index.getLong(slot)) && index.getInt(slot + 16) == segment) {
+                delete(slot);
+            }
+        }
+    }
+
+    /**
+     * 删除标记过多时重建索引
+     */
+    private void rehash() {
+        ByteBuffer previous = index;
+        index = ByteBuffer.allocateDirect(previous.capacity());
+        deleted = 0;
+        for (int slot = 0; slot < previous.capacity(); slot += SLOT_SIZE) {
+            long hash = previous.getLong(slot);
+            if (isLive(hash)) {
+                index.put(insertionSlot(hash), previous, slot, SLOT_SIZE);
+            }
+        }
+    }
+
+    /**
+     * 段文件在第一次写入时创建，文件按段大小稀疏分配
+     */
+    private MappedByteBuffer segment(int segment) {
+        if (segments[segment] == null) {
+            Path file = directory.resolve("segment-" + segment + ".dat");
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                segments[segment] = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            } catch (IOException e) {
+                throw new UncheckedIOException("映射磁盘缓存段文件失败：" + file, e);
+            }
+        }
+        return segments[segment];
+    }
+
+    /**
+     * 段的新旧程度，当前段为0，下一个被回收的段最大
+     */
+    private int age(int segment) {
+        return (active - segment + segments.length) % segments.length;
+    }
+
+    private static int stripe(long hash) {
+        return (int) (hash ^ (hash >>> 32)) & (SEQUENCE_STRIPES - 1);
+    }
+
+    private static boolean isLive(long hash) {
+        return hash != EMPTY && hash != DELETED;
+    }
+
+    /**
+     * 0 和 1 用于空槽位和删除标记
+     */
+    private static long hash(byte[] key) {
+        long hash = MurmurHash.hash64(key);
+        return hash == EMPTY || hash == DELETED ? 2 : hash;
+    }
+}
@@ -0,0 +1,97 @@
+package com.mcsirius.cloud.redis.support;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import com.mcsirius.cloud.redis.config.LockedCacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.stereotype.Component;
+import org.springframework.util.PatternMatchUtils;
+
+import java.time.Duration;
+
+/**
+ * 进程内一级缓存（L1），位于 redis（L2）之前
+ * 容量和存活时间都有上限，删除 redis 缓存时通过 redis 频道通知所有实例同步失效
+ */
+@Slf4j
+@Component
+public class NearCache {
+
+    private final LRUCache<String, Object> cache;
+
+    private final long timeToLive;
+
+    private final RTopic topic;
+
+    public NearCache(RedissonClient redissonClient, LockedCacheProperties lockedCacheProperties) {
+        LockedCacheProperties.Local local = lockedCacheProperties.getLocal();
+        this.timeToLive = local.getTimeToLive().toMillis();
+        this.cache = CacheUtil.newLRUCache(local.getMaximumSize(), this.timeToLive);
+        this.topic = redissonClient.getTopic(local.getInvalidationTopic(), StringCodec.INSTANCE);
+        // 收到其他实例（包括自己）的失效通知后清理本地缓存
+        this.topic.addListener(String.class, (channel, name) -> evictLocal(name));
+    }
+
+    /**
+     * 读取本地缓存，不存在或已过期时返回null
+     */
+    public Object get(String name) {
+        // 不刷新最后访问时间，保证本地缓存的存活时间是固定的
+        return cache.get(name, false);
+    }
+
+    /**
+     * 写入本地缓存，存活时间取配置值与redis TTL中较小的一个
+     */
+    public void put(String name, Object value, Duration duration) {
+        if (value == null) {
+            return;
+        }
+        long ttl = timeToLive;
+        if (duration != null && duration.toMillis() < ttl) {
+            ttl = duration.toMillis();
+        }
+        cache.put(name, value, ttl);
+    }
+
+    /**
+     * 失效本地缓存，并通知其他实例失效
+     */
+    public void invalidate(String name) {
+        evictLocal(name);
+        try {
+            topic.publish(name);
+        } catch (Exception e) {
+            // 通知失败时其他实例的本地缓存会在存活时间后自然过期
+            log.warn("发布本地缓存失效通知失败：{}", name, e);
+        }
+    }
+
+    /**
+     * invalidate 的异步版本，不等待失效通知发布完成
+     */
+    public void invalidateAsync(String name) {
+        evictLocal(name);
+        topic.publishAsync(name).whenComplete((receivers, e) -> {
+            if (e != null) {
+                log.warn("发布本地缓存失效通知失败：{}", name, e);
+            }
+        });
+    }
+
+    private void evictLocal(String name) {
+        if (name.indexOf('*') < 0) {
+            cache.remove(name);
+            return;
+        }
+        // 模糊删除时按通配符匹配本地缓存的key
+        for (String key : cache.keySet()) {
+            if (PatternMatchUtils.simpleMatch(name, key)) {
+                cache.remove(key);
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.mcsirius.cloud.redis.support;
+
+import com.mcsirius.cloud.redis.codec.CacheCodecRegistry;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * 开启提前刷新的缓存在redis中的存储格式：标记(1字节) + 加载耗时(8字节) + 过期时间(8字节) + value
+ * 读取时按 XFetch 算法判断是否需要提前刷新：加载越慢、越接近过期，越可能触发刷新
+ */
+public class RefreshAheadEntry {
+
+    /**
+     * 提前刷新标记，在 CacheCodecRegistry 的保留标记中登记
+     */
+    public static final byte MARKER = CacheCodecRegistry.REFRESH_AHEAD_MARKER;
+
+    private static final int HEADER_LENGTH = 17;
+
+    private final Object value;
+
+    /**
+     * 上次加载耗时（毫秒）
+     */
+    private final long delta;
+
+    /**
+     * 过期时间（毫秒时间戳）
+     */
+    private final long expireAt;
+
+    private RefreshAheadEntry(Object value, long delta, long expireAt) {
+        this.value = value;
+        this.delta = delta;
+        this.expireAt = expireAt;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    /**
+     * XFetch：now - delta * beta * ln(rand) >= expiry 时刷新，同一时刻只有少数请求会命中
+     */
+    public boolean shouldRefresh(double beta) {
+        double random = 1.0 - ThreadLocalRandom.current().nextDouble();
+        return System.currentTimeMillis() - delta * beta * Math.log(random) >= expireAt;
+    }
+
+    /**
+     * 在value前加上加载耗时和过期时间
+     */
+    public static byte[] wrap(byte[] rawValue, long delta, long expireAt) {
+        return ByteBuffer.allocate(HEADER_LENGTH + rawValue.length)
+                .put(MARKER)
+                .putLong(Math.max(1, delta))
+                .putLong(expireAt)
+                .put(rawValue)
+                .array();
+    }
+
+    public static boolean isWrapped(byte[] rawValue) {
+        return rawValue.length > HEADER_LENGTH && rawValue[0] == MARKER;
+    }
+
+    /**
+     * 解析 wrap 写入的数据，value部分使用 deserializer 解码
+     */
+    public static RefreshAheadEntry unwrap(byte[] rawValue, Function<byte[], Object> deserializer) {
+        ByteBuffer buffer = ByteBuffer.wrap(rawValue, 1, HEADER_LENGTH - 1);
+        long delta = buffer.getLong();
+        long expireAt = buffer.getLong();
+        Object value = deserializer.apply(Arrays.copyOfRange(rawValue, HEADER_LENGTH, rawValue.length));
+        return new RefreshAheadEntry(value, delta, expireAt);
+    }
+}
@@ -0,0 +1,112 @@
+package com.mcsirius.cloud.redis.support;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import com.mcsirius.cloud.redis.config.LockedCacheProperties;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.UndeclaredThrowableException;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 加载失败时返回旧值（stale-while-error）的辅助类
+ * 记录最近加载失败的key，在重试间隔内不再调用后端，直接返回旧值；并为加载设置超时时间
+ * 设置了超时时间的加载在有界线程池中执行，线程全部被占用时拒绝加载（抛出 RejectedExecutionException），调用方返回旧值
+ */
+@Component
+public class StaleValueGuard implements DisposableBean {
+
+    /**
+     * 最近加载失败的key，过期后允许再次加载
+     */
+    private final LRUCache<String, Boolean> failures;
+
+    private final long loadTimeout;
+
+    private final ThreadPoolExecutor executor;
+
+    public StaleValueGuard(LockedCacheProperties lockedCacheProperties) {
+        LockedCacheProperties.StaleWhileError staleWhileError = lockedCacheProperties.getStaleWhileError();
+        this.failures = CacheUtil.newLRUCache(staleWhileError.getMaximumFailures(),
+                staleWhileError.getRetryInterval().toMillis());
+        Duration timeout = staleWhileError.getLoadTimeout();
+        this.loadTimeout = timeout != null ? timeout.toMillis() : 0;
+        AtomicInteger index = new AtomicInteger();
+        // 不排队：排队的时间会占用加载的超时时间
+        this.executor = new ThreadPoolExecutor(0, staleWhileError.getLoadThreads(), 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "locked-cache-load-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 重试间隔内加载失败过的key返回false，此时应直接返回旧值
+     */
+    public boolean reloadAllowed(String name) {
+        return failures.get(name, false) == null;
+    }
+
+    public void loadFailed(String name) {
+        failures.put(name, Boolean.TRUE);
+    }
+
+    public void loadSucceeded(String name) {
+        failures.remove(name);
+    }
+
+    /**
+     * 执行加载，配置了超时时间时在单独的线程中执行，超时后中断加载并抛出 TimeoutException
+     * 在单独线程中执行时，目标方法读取不到调用线程的 ThreadLocal（如事务、安全上下文、MDC）
+     * @throws java.util.concurrent.RejectedExecutionException 加载线程全部被占用，此时不应记为加载失败
+     */
+    public Object load(Loader loader) throws Throwable {
+        if (loadTimeout <= 0) {
+            return loader.load();
+        }
+        Future<Object> future = executor.submit(() -> {
+            try {
+                return loader.load();
+            } catch (Error | Exception e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new UndeclaredThrowableException(e);
+            }
+        });
+        try {
+            return future.get(loadTimeout, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        } finally {
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * 异步加载的超时时间（毫秒），<=0 表示不限制
+     */
+    public long getLoadTimeout() {
+        return loadTimeout;
+    }
+
+    /**
+     * 加载逻辑，一般是 ProceedingJoinPoint::proceed
+     */
+    @FunctionalInterface
+    public interface Loader {
+        Object load() throws Throwable;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
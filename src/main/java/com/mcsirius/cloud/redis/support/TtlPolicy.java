@@ -0,0 +1,90 @@
+package com.mcsirius.cloud.redis.support;
+
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.lang.Nullable;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 缓存的过期策略：基础TTL + 百分比随机抖动，并限制在最小值和最大值之间
+ * 同一批写入的key过期时间被打散，避免同时失效；开启滑动过期时读取会刷新TTL（GETEX）
+ * 同时作为 RedisCache 的 TtlFunction 使用
+ */
+public class TtlPolicy implements RedisCacheWriter.TtlFunction {
+
+    private static final TtlPolicy PERSISTENT = new TtlPolicy(null, 0, false, null, null);
+
+    @Nullable
+    private final Duration timeToLive;
+
+    private final int jitterPercent;
+
+    private final boolean sliding;
+
+    @Nullable
+    private final Duration min;
+
+    @Nullable
+    private final Duration max;
+
+    /**
+     * @param timeToLive 基础TTL，为null时永不过期
+     * @param jitterPercent 随机抖动的百分比，TTL在 ±jitterPercent% 范围内浮动
+     * @param sliding 是否在读取时刷新TTL
+     * @param min TTL下限，可为null
+     * @param max TTL上限，可为null
+     */
+    public TtlPolicy(@Nullable Duration timeToLive, int jitterPercent, boolean sliding,
+                     @Nullable Duration min, @Nullable Duration max) {
+        this.timeToLive = timeToLive != null && !timeToLive.isZero() && !timeToLive.isNegative() ? timeToLive : null;
+        this.jitterPercent = Math.max(0, Math.min(jitterPercent, 100));
+        this.sliding = sliding;
+        this.min = min;
+        this.max = max;
+    }
+
+    public static TtlPolicy persistent() {
+        return PERSISTENT;
+    }
+
+    /**
+     * 基础TTL，永不过期时为null
+     */
+    @Nullable
+    public Duration getTimeToLive() {
+        return timeToLive;
+    }
+
+    public boolean isSliding() {
+        return sliding && timeToLive != null;
+    }
+
+    /**
+     * 计算一次写入（或滑动过期的一次读取）使用的TTL，永不过期时返回null
+     */
+    @Nullable
+    public Duration nextTtl() {
+        if (timeToLive == null) {
+            return null;
+        }
+        long millis = timeToLive.toMillis();
+        if (jitterPercent > 0) {
+            long jitter = millis * jitterPercent / 100;
+            millis += ThreadLocalRandom.current().nextLong(-jitter, jitter + 1);
+        }
+        if (min != null) {
+            millis = Math.max(millis, min.toMillis());
+        }
+        if (max != null) {
+            millis = Math.min(millis, max.toMillis());
+        }
+        return Duration.ofMillis(Math.max(1, millis));
+    }
+
+    @Override
+    public Duration getTimeToLive(Object key, @Nullable Object value) {
+        Duration ttl = nextTtl();
+        return ttl != null ? ttl : Duration.ZERO;
+    }
+}
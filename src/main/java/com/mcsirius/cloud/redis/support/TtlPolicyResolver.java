@@ -0,0 +1,58 @@
+package com.mcsirius.cloud.redis.support;
+
+import com.mcsirius.cloud.redis.config.LockedCacheProperties;
+import org.springframework.boot.autoconfigure.cache.CacheProperties;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按缓存名解析过期策略，TTCacheManager 和缓存注解切面共用，每个缓存只解析一次
+ * TTL的优先级：缓存名中的 #TTL > locked-cache.ttl.caches 中的配置 > spring.cache.redis.time-to-live
+ * 抖动、滑动过期、上下限：locked-cache.ttl.caches 中的配置 > locked-cache.ttl 中的默认值
+ */
+@Component
+public class TtlPolicyResolver {
+
+    private final Map<String, TtlPolicy> policies = new ConcurrentHashMap<>();
+
+    private final LockedCacheProperties.Ttl ttl;
+
+    @Nullable
+    private final Duration defaultTimeToLive;
+
+    public TtlPolicyResolver(LockedCacheProperties lockedCacheProperties, @Nullable CacheProperties cacheProperties) {
+        this.ttl = lockedCacheProperties.getTtl();
+        this.defaultTimeToLive = cacheProperties != null ? cacheProperties.getRedis().getTimeToLive() : null;
+    }
+
+    /**
+     * @param cacheName 缓存名（不含 #TTL 部分）
+     * @param timeToLive 缓存名中指定的TTL，未指定时为null
+     */
+    public TtlPolicy resolve(String cacheName, @Nullable Duration timeToLive) {
+        return policies.computeIfAbsent(timeToLive != null ? cacheName + "#" + timeToLive : cacheName,
+                key -> create(cacheName, timeToLive));
+    }
+
+    private TtlPolicy create(String cacheName, @Nullable Duration timeToLive) {
+        LockedCacheProperties.CacheTtl cacheTtl = ttl.getCaches().get(cacheName);
+        if (timeToLive == null) {
+            timeToLive = cacheTtl != null && cacheTtl.getTimeToLive() != null ? cacheTtl.getTimeToLive() : defaultTimeToLive;
+        }
+        if (timeToLive == null) {
+            return TtlPolicy.persistent();
+        }
+        if (cacheTtl == null) {
+            return new TtlPolicy(timeToLive, ttl.getJitterPercent(), ttl.isSliding(), ttl.getMin(), ttl.getMax());
+        }
+        return new TtlPolicy(timeToLive,
+                cacheTtl.getJitterPercent() != null ? cacheTtl.getJitterPercent() : ttl.getJitterPercent(),
+                cacheTtl.getSliding() != null ? cacheTtl.getSliding() : ttl.isSliding(),
+                cacheTtl.getMin() != null ? cacheTtl.getMin() : ttl.getMin(),
+                cacheTtl.getMax() != null ? cacheTtl.getMax() : ttl.getMax());
+    }
+}
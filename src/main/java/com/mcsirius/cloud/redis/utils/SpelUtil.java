@@ -4,33 +4,67 @@ import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.expression.EvaluationContext;
 import org.springframework.expression.Expression;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
-import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.expression.spel.support.SimpleEvaluationContext;
 
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class SpelUtil {
     /**
-     * 用于SpEL表达式解析.
+     * 用于SpEL表达式解析，表达式会被立即编译成字节码.
      */
-    private static final SpelExpressionParser parser = new SpelExpressionParser();
+    private static final SpelExpressionParser parser = new SpelExpressionParser(
+            new SpelParserConfiguration(SpelCompilerMode.IMMEDIATE, SpelUtil.class.getClassLoader()));
+
+    /**
+     * 解析过的表达式，相同的表达式只解析一次.
+     */
+    private static final Map<String, Expression> expressionCache = new ConcurrentHashMap<>();
 
     public static String generateKeyBySpEL(String spELString, ProceedingJoinPoint joinPoint) {
         // 通过joinPoint获取被注解方法
         MethodSignature methodSignature = (MethodSignature) joinPoint.getSignature();
         Method method = methodSignature.getMethod();
-        Parameter[] parameters = method.getParameters();
-        // 使用spring的DefaultParameterNameDiscoverer获取方法形参名数组
         // 解析过后的Spring表达式对象
-        Expression expression = parser.parseExpression(spELString);
-        // spring的表达式上下文对象
-        EvaluationContext context = new StandardEvaluationContext();
+        Expression expression = parseExpression(spELString);
         // 通过joinPoint获取被注解方法的形参
-        Object[] args = joinPoint.getArgs();
+        return generateKey(expression, getParameterNames(method), joinPoint.getArgs());
+    }
+
+    /**
+     * 解析并缓存表达式，表达式有语法错误时抛出 ParseException.
+     */
+    public static Expression parseExpression(String spELString) {
+        return expressionCache.computeIfAbsent(spELString, parser::parseExpression);
+    }
+
+    /**
+     * 获取方法的形参名数组，与表达式中的变量名对应.
+     */
+    public static String[] getParameterNames(Method method) {
+        Parameter[] parameters = method.getParameters();
+        String[] names = new String[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            names[i] = parameters[i].getName();
+        }
+        return names;
+    }
+
+    /**
+     * 使用只读数据绑定的 SimpleEvaluationContext 计算key，只保存本次调用的参数变量，不初始化类型转换、bean解析等组件，
+     * 支持属性读取、索引和实例方法调用，不支持类型引用 T() 和构造函数
+     */
+    public static String generateKey(Expression expression, String[] parameterNames, Object[] args) {
+        // spring的表达式上下文对象
+        EvaluationContext context = SimpleEvaluationContext.forReadOnlyDataBinding().withInstanceMethods().build();
         // 给上下文赋值
         for(int i = 0 ; i < args.length ; i++) {
-            context.setVariable(parameters[i].getName(), args[i]);
+            context.setVariable(parameterNames[i], args[i]);
         }
         // 表达式从上下文中计算出实际参数值
         /*如:
@@ -40,4 +74,11 @@ public class SpelUtil {
         */
         return expression.getValue(context).toString();
     }
+
+    /**
+     * 以指定对象为根对象计算表达式，如 id 或 #root.id
+     */
+    public static String evaluate(Expression expression, Object rootObject) {
+        return String.valueOf(expression.getValue(rootObject));
+    }
 }
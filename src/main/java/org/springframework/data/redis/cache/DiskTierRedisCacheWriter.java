@@ -0,0 +1,197 @@
+package org.springframework.data.redis.cache;
+
+import com.mcsirius.cloud.redis.support.CacheAsyncExecutor;
+import com.mcsirius.cloud.redis.support.MappedDiskTier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.lang.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link RedisCacheWriter} keeping large serialized values of {@link TTCacheManager} caches in a local
+ * {@link MappedDiskTier} in front of Redis.
+ * <p>
+ * Local copies expire together with the Redis entry: writes use the TTL passed in, values read from Redis use the
+ * remaining {@literal PTTL} of the key. Writes and removals are published so other instances drop their copies.
+ * Values read from Redis are only copied to disk if the key was not written or invalidated since the read started,
+ * so a slow read cannot overwrite a newer local copy with an older value.
+ * Values retrieved asynchronously are copied to disk on the {@link CacheAsyncExecutor}, never on the Redis client
+ * callback thread; when the executor is saturated the local copy is skipped.
+ * Caches with time-to-idle expiration always read from Redis, since a local hit would not extend the Redis TTL.
+ */
+@Slf4j
+public class DiskTierRedisCacheWriter implements RedisCacheWriter {
+
+    private final RedisCacheWriter delegate;
+
+    private final RedisConnectionFactory connectionFactory;
+
+    private final MappedDiskTier diskTier;
+
+    private final CacheAsyncExecutor executor;
+
+    private final CacheStatisticsCollector statistics;
+
+    public DiskTierRedisCacheWriter(RedisCacheWriter delegate, RedisConnectionFactory connectionFactory,
+                                    MappedDiskTier diskTier, CacheAsyncExecutor executor, CacheStatisticsCollector statistics) {
+        this.delegate = delegate;
+        this.connectionFactory = connectionFactory;
+        this.diskTier = diskTier;
+        this.executor = executor;
+        this.statistics = statistics;
+    }
+
+    @Override
+    public byte[] get(String name, byte[] key) {
+        if (!diskTier.isEnabled(name)) {
+            return delegate.get(name, key);
+        }
+        byte[] value = getLocal(name, key);
+        if (value != null) {
+            return value;
+        }
+        long sequence = diskTier.sequence(key);
+        value = delegate.get(name, key);
+        if (value != null && diskTier.accepts(key, value)) {
+            putLocal(key, value, sequence);
+        }
+        return value;
+    }
+
+    @Override
+    public byte[] get(String name, byte[] key, @Nullable Duration ttl) {
+        return delegate.get(name, key, ttl);
+    }
+
+    @Override
+    public boolean supportsAsyncRetrieve() {
+        return delegate.supportsAsyncRetrieve();
+    }
+
+    @Override
+    public CompletableFuture<byte[]> retrieve(String name, byte[] key, @Nullable Duration ttl) {
+        if (ttl != null || !diskTier.isEnabled(name)) {
+            return delegate.retrieve(name, key, ttl);
+        }
+        byte[] value = getLocal(name, key);
+        if (value != null) {
+            return CompletableFuture.completedFuture(value);
+        }
+        long sequence = diskTier.sequence(key);
+        return delegate.retrieve(name, key).whenComplete((retrieved, e) -> {
+            if (retrieved != null && diskTier.accepts(key, retrieved)) {
+                // 查询 PTTL 是阻塞调用，不占用redis客户端的回调线程；线程池已满时放弃保存本地副本
+                executor.supply(() -> {
+                    putLocal(key, retrieved, sequence);
+                    return null;
+                });
+            }
+        });
+    }
+
+    @Override
+    public void put(String name, byte[] key, byte[] value, @Nullable Duration ttl) {
+        delegate.put(name, key, value, ttl);
+        if (diskTier.isEnabled(name)) {
+            written(key, value, ttl);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> store(String name, byte[] key, byte[] value, @Nullable Duration ttl) {
+        CompletableFuture<Void> store = delegate.store(name, key, value, ttl);
+        return diskTier.isEnabled(name) ? store.thenRun(() -> written(key, value, ttl)) : store;
+    }
+
+    @Override
+    public byte[] putIfAbsent(String name, byte[] key, byte[] value, @Nullable Duration ttl) {
+        byte[] existing = delegate.putIfAbsent(name, key, value, ttl);
+        if (existing == null && diskTier.isEnabled(name)) {
+            written(key, value, ttl);
+        }
+        return existing;
+    }
+
+    @Override
+    public void remove(String name, byte[] key) {
+        delegate.remove(name, key);
+        if (diskTier.isEnabled(name)) {
+            diskTier.evict(key);
+            diskTier.publish(key);
+        }
+    }
+
+    @Override
+    public void clean(String name, byte[] pattern) {
+        delegate.clean(name, pattern);
+        if (diskTier.isEnabled(name)) {
+            String keyPattern = new String(pattern, StandardCharsets.UTF_8);
+            diskTier.evictMatching(keyPattern);
+            diskTier.publishPattern(keyPattern);
+        }
+    }
+
+    @Override
+    public void clearStatistics(String name) {
+        delegate.clearStatistics(name);
+    }
+
+    @Override
+    public RedisCacheWriter withStatisticsCollector(CacheStatisticsCollector cacheStatisticsCollector) {
+        return new DiskTierRedisCacheWriter(delegate.withStatisticsCollector(cacheStatisticsCollector),
+                connectionFactory, diskTier, executor, cacheStatisticsCollector);
+    }
+
+    @Override
+    public CacheStatistics getCacheStatistics(String cacheName) {
+        return delegate.getCacheStatistics(cacheName);
+    }
+
+    /**
+     * 本地命中时不经过redis，在这里计入缓存统计
+     */
+    @Nullable
+    private byte[] getLocal(String name, byte[] key) {
+        byte[] value = diskTier.get(key);
+        if (value != null) {
+            statistics.incGets(name);
+            statistics.incHits(name);
+        }
+        return value;
+    }
+
+    /**
+     * 从redis读到的大value按key的剩余存活时间保存到本地
+     * @param sequence 读取redis之前的失效序号，之后key被修改或删除过时不保存
+     */
+    private void putLocal(byte[] key, byte[] value, long sequence) {
+        Long pttl;
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            pttl = connection.keyCommands().pTtl(key);
+        } catch (RuntimeException e) {
+            log.warn("查询磁盘缓存key的过期时间失败", e);
+            return;
+        }
+        // -2：读取之后key已被删除；-1：永不过期
+        if (pttl == null || pttl == -2 || pttl == 0) {
+            return;
+        }
+        diskTier.populate(key, value, pttl > 0 ? Duration.ofMillis(pttl) : null, sequence);
+    }
+
+    /**
+     * redis中的数据被修改后更新本地副本，并通知其他实例失效
+     */
+    private void written(byte[] key, byte[] value, @Nullable Duration ttl) {
+        if (diskTier.accepts(key, value)) {
+            diskTier.put(key, value, ttl != null && !ttl.isZero() && !ttl.isNegative() ? ttl : null);
+        } else {
+            diskTier.evict(key);
+        }
+        diskTier.publish(key);
+    }
+}
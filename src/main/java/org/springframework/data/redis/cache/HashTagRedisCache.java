@@ -0,0 +1,22 @@
+package org.springframework.data.redis.cache;
+
+import com.mcsirius.cloud.redis.support.CacheKeyLayout;
+
+/**
+ * {@link RedisCache} wrapping the converted cache key in a Redis Cluster {@literal {hash tag}}, so the entry is stored
+ * in the same slot as the locks and metadata the cache aspects derive from it (see {@link CacheKeyLayout}).
+ * <p>
+ * Key patterns used by {@link #clear()} are wrapped the same way, so {@literal *} still matches all entries.
+ */
+public class HashTagRedisCache extends RedisCache {
+
+    protected HashTagRedisCache(String name, RedisCacheWriter cacheWriter, RedisCacheConfiguration cacheConfiguration) {
+        super(name, cacheWriter, cacheConfiguration);
+    }
+
+    @Override
+    protected String createCacheKey(Object key) {
+        // String keys are not converted again, only the cache name prefix is added
+        return super.createCacheKey(CacheKeyLayout.tag(convertKey(key)));
+    }
+}
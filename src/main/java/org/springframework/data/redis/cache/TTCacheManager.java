@@ -1,9 +1,15 @@
 package org.springframework.data.redis.cache;
 
+import com.mcsirius.cloud.redis.support.CacheMetrics;
+import com.mcsirius.cloud.redis.support.CacheAsyncExecutor;
+import com.mcsirius.cloud.redis.support.MappedDiskTier;
+import com.mcsirius.cloud.redis.support.TtlPolicy;
+import com.mcsirius.cloud.redis.support.TtlPolicyResolver;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cache.Cache;
 import org.springframework.cache.transaction.AbstractTransactionSupportingCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.util.RedisAssertions;
 import org.springframework.lang.Nullable;
 import org.springframework.util.Assert;
@@ -12,6 +18,7 @@ import org.springframework.util.StringUtils;
 import java.time.Duration;
 import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.function.Function;
 
 @Slf4j
 public class TTCacheManager extends AbstractTransactionSupportingCacheManager {
@@ -26,6 +33,14 @@ public class TTCacheManager extends AbstractTransactionSupportingCacheManager {
 
     private final Map<String, RedisCacheConfiguration> initialCacheConfiguration;
 
+    private @Nullable Function<String, RedisSerializationContext.SerializationPair<?>> valueSerializationPairResolver;
+
+    private @Nullable TtlPolicyResolver ttlPolicyResolver;
+
+    private @Nullable CacheMetrics cacheMetrics;
+
+    private boolean hashTagKeys;
+
     /**
      * Creates a new {@link TTCacheManager} initialized with the given {@link RedisCacheWriter} and default
      * {@link RedisCacheConfiguration}.
@@ -334,6 +349,48 @@ public class TTCacheManager extends AbstractTransactionSupportingCacheManager {
         return this.cacheWriter;
     }
 
+    /**
+     * Configure a {@link Function} resolving the value {@link RedisSerializationContext.SerializationPair} for each
+     * {@link RedisCache} by its {@link String name} (without the {@literal #TTL} suffix).
+     *
+     * @param valueSerializationPairResolver resolver applied on cache creation; {@literal null} keeps the serializer
+     * of the {@link RedisCacheConfiguration}.
+     */
+    public void setValueSerializationPairResolver(
+            @Nullable Function<String, RedisSerializationContext.SerializationPair<?>> valueSerializationPairResolver) {
+        this.valueSerializationPairResolver = valueSerializationPairResolver;
+    }
+
+    /**
+     * Configure the {@link TtlPolicyResolver} resolving the {@link TtlPolicy} (jitter, sliding expiration, bounds) of
+     * each {@link RedisCache} by its {@link String name} and the optional {@literal #TTL} suffix.
+     *
+     * @param ttlPolicyResolver resolver applied on cache creation; {@literal null} keeps the fixed TTL of the
+     * {@link RedisCacheConfiguration}.
+     */
+    public void setTtlPolicyResolver(@Nullable TtlPolicyResolver ttlPolicyResolver) {
+        this.ttlPolicyResolver = ttlPolicyResolver;
+    }
+
+    /**
+     * Configure the {@link CacheMetrics} each created {@link RedisCache} registers its {@link CacheStatistics} with.
+     *
+     * @param cacheMetrics metrics applied on cache creation; {@literal null} registers no meters.
+     */
+    public void setCacheMetrics(@Nullable CacheMetrics cacheMetrics) {
+        this.cacheMetrics = cacheMetrics;
+    }
+
+    /**
+     * Configure whether cache keys are wrapped in a Redis Cluster {@literal {hash tag}}, colocating each entry with the
+     * locks of the cache aspects.
+     *
+     * @param hashTagKeys {@literal true} to create {@link HashTagRedisCache} instances.
+     */
+    public void setHashTagKeys(boolean hashTagKeys) {
+        this.hashTagKeys = hashTagKeys;
+    }
+
     @Override
     protected RedisCache getMissingCache(String name) {
         return isAllowRuntimeCacheCreation() ? createRedisCache(name, getDefaultCacheConfiguration()) : null;
@@ -350,16 +407,35 @@ public class TTCacheManager extends AbstractTransactionSupportingCacheManager {
     protected RedisCache createRedisCache(String name, @Nullable RedisCacheConfiguration cacheConfiguration) {
         String[] array = StringUtils.delimitedListToStringArray(name, "#");
         name = array[0];
+        Duration duration = null;
         if (array.length > 1) {
             try {
-                Duration duration = Duration.parse(array[1]);
+                duration = Duration.parse(array[1]);
                 cacheConfiguration = Objects.requireNonNull(cacheConfiguration).entryTtl(duration);
             } catch (DateTimeParseException e) {
                 log.error("错误的 TTL 格式");
                 throw e;
             }
         }
-        return new RedisCache(name, getCacheWriter(), resolveCacheConfiguration(cacheConfiguration));
+        if (this.ttlPolicyResolver != null) {
+            // 与缓存注解切面使用同一个过期策略
+            TtlPolicy ttlPolicy = this.ttlPolicyResolver.resolve(name, duration);
+            cacheConfiguration = resolveCacheConfiguration(cacheConfiguration).entryTtl(ttlPolicy);
+            if (ttlPolicy.isSliding()) {
+                cacheConfiguration = cacheConfiguration.enableTimeToIdle();
+            }
+        }
+        if (this.valueSerializationPairResolver != null) {
+            cacheConfiguration = resolveCacheConfiguration(cacheConfiguration)
+                    .serializeValuesWith(this.valueSerializationPairResolver.apply(name));
+        }
+        RedisCache cache = this.hashTagKeys
+                ? new HashTagRedisCache(name, getCacheWriter(), resolveCacheConfiguration(cacheConfiguration))
+                : new RedisCache(name, getCacheWriter(), resolveCacheConfiguration(cacheConfiguration));
+        if (this.cacheMetrics != null) {
+            this.cacheMetrics.bindRedisCache(cache);
+        }
+        return cache;
     }
 
     @Override
@@ -414,7 +490,9 @@ public class TTCacheManager extends AbstractTransactionSupportingCacheManager {
 
             RedisCacheWriter cacheWriter = RedisCacheWriter.nonLockingRedisCacheWriter(connectionFactory);
 
-            return new TTCacheManager.TTCacheManagerBuilder(cacheWriter);
+            TTCacheManager.TTCacheManagerBuilder builder = new TTCacheManager.TTCacheManagerBuilder(cacheWriter);
+            builder.connectionFactory = connectionFactory;
+            return builder;
         }
 
         private boolean allowRuntimeCacheCreation = true;
@@ -428,6 +506,20 @@ public class TTCacheManager extends AbstractTransactionSupportingCacheManager {
 
         private @Nullable RedisCacheWriter cacheWriter;
 
+        private @Nullable Function<String, RedisSerializationContext.SerializationPair<?>> valueSerializationPairResolver;
+
+        private @Nullable TtlPolicyResolver ttlPolicyResolver;
+
+        private @Nullable CacheMetrics cacheMetrics;
+
+        private boolean hashTagKeys;
+
+        private @Nullable MappedDiskTier diskTier;
+
+        private @Nullable CacheAsyncExecutor diskTierExecutor;
+
+        private @Nullable RedisConnectionFactory connectionFactory;
+
         private TTCacheManagerBuilder() {}
 
         private TTCacheManagerBuilder(RedisCacheWriter cacheWriter) {
@@ -510,6 +602,80 @@ public class TTCacheManager extends AbstractTransactionSupportingCacheManager {
             return this;
         }
 
+        /**
+         * Resolve the value {@link RedisSerializationContext.SerializationPair} per cache, overriding the one configured
+         * in {@link RedisCacheConfiguration}.
+         *
+         * @param valueSerializationPairResolver function receiving the {@link String cache name}; must not be {@literal null}.
+         * @return this {@link TTCacheManager.TTCacheManagerBuilder}.
+         */
+        public TTCacheManager.TTCacheManagerBuilder serializeValuesWith(
+                Function<String, RedisSerializationContext.SerializationPair<?>> valueSerializationPairResolver) {
+
+            Assert.notNull(valueSerializationPairResolver, "ValueSerializationPairResolver must not be null");
+
+            this.valueSerializationPairResolver = valueSerializationPairResolver;
+
+            return this;
+        }
+
+        /**
+         * Resolve the {@link TtlPolicy} per cache, overriding the fixed TTL configured in {@link RedisCacheConfiguration}.
+         *
+         * @param ttlPolicyResolver resolver receiving the {@link String cache name}; must not be {@literal null}.
+         * @return this {@link TTCacheManager.TTCacheManagerBuilder}.
+         */
+        public TTCacheManager.TTCacheManagerBuilder ttlPolicies(TtlPolicyResolver ttlPolicyResolver) {
+
+            Assert.notNull(ttlPolicyResolver, "TtlPolicyResolver must not be null");
+
+            this.ttlPolicyResolver = ttlPolicyResolver;
+
+            return this;
+        }
+
+        /**
+         * Register the {@link CacheStatistics} of each {@link RedisCache} as Micrometer meters. Enables cache statistics.
+         *
+         * @param cacheMetrics {@link CacheMetrics} to register with; must not be {@literal null}.
+         * @return this {@link TTCacheManager.TTCacheManagerBuilder}.
+         */
+        public TTCacheManager.TTCacheManagerBuilder cacheMetrics(CacheMetrics cacheMetrics) {
+
+            Assert.notNull(cacheMetrics, "CacheMetrics must not be null");
+
+            this.cacheMetrics = cacheMetrics;
+
+            return enableStatistics();
+        }
+
+        /**
+         * Wrap cache keys in a Redis Cluster {@literal {hash tag}}.
+         *
+         * @param hashTagKeys {@literal true} to create {@link HashTagRedisCache} instances.
+         * @return this {@link TTCacheManager.TTCacheManagerBuilder}.
+         */
+        public TTCacheManager.TTCacheManagerBuilder hashTagKeys(boolean hashTagKeys) {
+            this.hashTagKeys = hashTagKeys;
+            return this;
+        }
+
+        /**
+         * Keep large serialized values in a local {@link MappedDiskTier} in front of Redis, see
+         * {@link DiskTierRedisCacheWriter}. Requires a builder created from a {@link RedisConnectionFactory}, which is
+         * used to read the remaining TTL of values loaded from Redis.
+         *
+         * @param diskTier can be {@literal null} to read all values from Redis.
+         * @param executor runs the blocking {@literal PTTL} and disk write for values loaded asynchronously; when it
+         *            is saturated the local copy is skipped.
+         * @return this {@link TTCacheManager.TTCacheManagerBuilder}.
+         */
+        public TTCacheManager.TTCacheManagerBuilder diskTier(@Nullable MappedDiskTier diskTier, CacheAsyncExecutor executor) {
+            this.diskTier = diskTier;
+            this.diskTierExecutor = executor;
+            return this;
+        }
+
         /**
          * Enables cache statistics.
          *
@@ -620,9 +786,19 @@ public class TTCacheManager extends AbstractTransactionSupportingCacheManager {
                     ? this.cacheWriter.withStatisticsCollector(this.statisticsCollector)
                     : this.cacheWriter;
 
+            if (this.diskTier != null) {
+                Assert.state(this.connectionFactory != null, "Disk tier requires a builder created from a RedisConnectionFactory");
+                resolvedCacheWriter = new DiskTierRedisCacheWriter(resolvedCacheWriter, this.connectionFactory,
+                        this.diskTier, this.diskTierExecutor, this.statisticsCollector);
+            }
+
             TTCacheManager cacheManager = newTTCacheManager(resolvedCacheWriter);
 
             cacheManager.setTransactionAware(this.enableTransactions);
+            cacheManager.setValueSerializationPairResolver(this.valueSerializationPairResolver);
+            cacheManager.setTtlPolicyResolver(this.ttlPolicyResolver);
+            cacheManager.setCacheMetrics(this.cacheMetrics);
+            cacheManager.setHashTagKeys(this.hashTagKeys);
 
             return cacheManager;
         }
@@ -0,0 +1,128 @@
+package com.mcsirius.cloud.redis.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CacheKeyGeneratorTest {
+
+    private final CacheKeyGenerator generator = new CacheKeyGenerator(128);
+
+    private final Service target = new Service();
+
+    @Test
+    void differentSplitsOfTheSameCharactersDoNotCollide() throws Exception {
+        Method method = Service.class.getMethod("find", String.class, String.class);
+        assertThat(generator.generate(target, method, "1", "23"))
+                .isNotEqualTo(generator.generate(target, method, "12", "3"));
+        // 分隔符被转义，不能拼出另一组参数
+        assertThat(generator.generate(target, method, "1,2", "3"))
+                .isNotEqualTo(generator.generate(target, method, "1", "2,3"));
+        assertThat(generator.generate(target, method, null, "a"))
+                .isNotEqualTo(generator.generate(target, method, "null", "a"));
+    }
+
+    @Test
+    void collectionsAndArraysKeepTheirBoundaries() throws Exception {
+        Method method = Service.class.getMethod("findAll", Object.class, Object.class);
+        assertThat(generator.generate(target, method, List.of(1, 2), List.of(3)))
+                .isNotEqualTo(generator.generate(target, method, List.of(1), List.of(2, 3)));
+        assertThat(generator.generate(target, method, new int[]{1, 2}, 3))
+                .isNotEqualTo(generator.generate(target, method, List.of(1, 2), 3))
+                .isNotEqualTo(generator.generate(target, method, new long[]{1, 2}, 3));
+        assertThat(generator.generate(target, method, Set.of(), null))
+                .isNotEqualTo(generator.generate(target, method, Map.of(), null));
+    }
+
+    @Test
+    void overloadsDoNotShareKeys() throws Exception {
+        Method byString = Service.class.getMethod("find", String.class);
+        Method byLong = Service.class.getMethod("find", Long.class);
+        assertThat(generator.generate(target, byString, "1"))
+                .isNotEqualTo(generator.generate(target, byLong, 1L));
+        assertThat(generator.generate(target, byString, (Object) null))
+                .isNotEqualTo(generator.generate(target, byLong, (Object) null));
+    }
+
+    @Test
+    void stringsDoNotCollideWithOtherTypes() throws Exception {
+        Method method = Service.class.getMethod("findAll", Object.class, Object.class);
+        assertThat(generator.generate(target, method, 1L, null))
+                .isNotEqualTo(generator.generate(target, method, "1", null))
+                .isNotEqualTo(generator.generate(target, method, new BigDecimal("1"), null));
+        assertThat(generator.generate(target, method, Boolean.TRUE, null))
+                .isNotEqualTo(generator.generate(target, method, "true", null));
+        assertThat(generator.generate(target, method, TimeUnit.DAYS, null))
+                .isNotEqualTo(generator.generate(target, method, "DAYS", null));
+        // 引号被转义，不能拼出另一组参数
+        assertThat(generator.generate(target, method, "a\",\"b", null))
+                .isNotEqualTo(generator.generate(target, method, "a", "b"));
+        // 整数参数按数值编码，Integer 和 Long 得到相同的key
+        assertThat(generator.generate(target, method, 1, null))
+                .isEqualTo(generator.generate(target, method, 1L, null));
+    }
+
+    @Test
+    void equalSetsAndMapsGiveTheSameKeyRegardlessOfIterationOrder() throws Exception {
+        Method method = Service.class.getMethod("findAll", Object.class, Object.class);
+        Set<String> ascending = new LinkedHashSet<>(Arrays.asList("a", "b", "c"));
+        Set<String> descending = new LinkedHashSet<>(Arrays.asList("c", "b", "a"));
+        assertThat(generator.generate(target, method, ascending, null))
+                .isEqualTo(generator.generate(target, method, descending, null))
+                .isEqualTo(generator.generate(target, method, new HashSet<>(descending), null));
+
+        Map<String, Integer> first = new HashMap<>(Map.of("x", 1, "y", 2));
+        Map<String, Integer> second = new HashMap<>(1);
+        second.put("y", 2);
+        second.put("x", 1);
+        assertThat(generator.generate(target, method, first, null))
+                .isEqualTo(generator.generate(target, method, second, null));
+    }
+
+    @Test
+    void longParametersAreReplacedWithAHash() throws Exception {
+        Method method = Service.class.getMethod("find", String.class, String.class);
+        String shortKey = (String) generator.generate(target, method, "a", "b");
+        String prefix = Service.class.getName() + ".find(java.lang.String,java.lang.String):";
+        assertThat(shortKey).isEqualTo(prefix + "\"a\",\"b\"");
+
+        String longValue = "x".repeat(200);
+        String hashed = (String) generator.generate(target, method, longValue, "b");
+        assertThat(hashed).startsWith(prefix + "#").hasSize(prefix.length() + 1 + 32);
+        assertThat(generator.generate(target, method, longValue, "b")).isEqualTo(hashed);
+        assertThat(generator.generate(target, method, longValue, "c")).isNotEqualTo(hashed);
+
+        // 阈值 <=0 时不哈希
+        assertThat((String) new CacheKeyGenerator(0).generate(target, method, longValue, "b")).contains(longValue);
+    }
+
+    static class Service {
+
+        public Object find(String id) {
+            return null;
+        }
+
+        public Object find(Long id) {
+            return null;
+        }
+
+        public Object find(String first, String second) {
+            return null;
+        }
+
+        public Object findAll(Object first, Object second) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.mcsirius.cloud.redis.support;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CacheScriptsTest {
+
+    @Test
+    void oddVersionMeansAWriteIsInProgress() {
+        assertThat(new CacheScripts.VersionedValue("0", null).isWriting()).isFalse();
+        assertThat(new CacheScripts.VersionedValue("1", null).isWriting()).isTrue();
+        assertThat(new CacheScripts.VersionedValue("2", null).isWriting()).isFalse();
+        assertThat(new CacheScripts.VersionedValue("19", null).isWriting()).isTrue();
+        assertThat(new CacheScripts.VersionedValue("120", null).isWriting()).isFalse();
+        // 只看最后一位，超过 long 范围的版本号同样适用
+        assertThat(CacheScripts.isWriting("92233720368547758071")).isTrue();
+        assertThat(CacheScripts.isWriting("92233720368547758070")).isFalse();
+    }
+
+    @Test
+    void parityMatchesTheNumericVersion() {
+        for (long version = 0; version < 1000; version++) {
+            assertThat(CacheScripts.isWriting(String.valueOf(version))).isEqualTo(version % 2 == 1);
+        }
+    }
+
+    @Test
+    void versionKeyKeepsTheHashTag() {
+        assertThat(CacheScripts.versionName("user::{1}")).isEqualTo("user::{1}:ver");
+    }
+}
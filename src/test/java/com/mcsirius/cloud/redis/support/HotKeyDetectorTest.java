@@ -0,0 +1,65 @@
+package com.mcsirius.cloud.redis.support;
+
+import com.mcsirius.cloud.redis.config.LockedCacheProperties;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HotKeyDetectorTest {
+
+    private static final long WINDOW_MILLIS = 200;
+
+    private HotKeyDetector detector() {
+        LockedCacheProperties properties = new LockedCacheProperties();
+        properties.getHotKey().setEnabled(true);
+        properties.getHotKey().setWindow(Duration.ofMillis(WINDOW_MILLIS));
+        properties.getHotKey().setThreshold(10);
+        return new HotKeyDetector(properties);
+    }
+
+    @Test
+    void keyBecomesHotAtTheThreshold() {
+        HotKeyDetector detector = detector();
+        for (int i = 1; i < 10; i++) {
+            assertThat(detector.record("user::1", "user", "1")).isFalse();
+        }
+        assertThat(detector.record("user::1", "user", "1")).isTrue();
+        assertThat(detector.record("user::2", "user", "2")).isFalse();
+        assertThat(detector.getHotKeys()).containsOnlyKeys("user::1");
+        assertThat(detector.snapshot()).extracting(HotKeyDetector.HotKey::getKey).containsExactly("1");
+    }
+
+    @Test
+    void previousWindowStillCountsRightAfterRotation() throws InterruptedException {
+        HotKeyDetector detector = detector();
+        for (int i = 0; i < 20; i++) {
+            detector.record("user::1", "user", "1");
+        }
+        Thread.sleep(WINDOW_MILLIS + 20);
+        // 新窗口刚开始，上一个窗口的计数几乎全部计入
+        assertThat(detector.record("user::1", "user", "1")).isTrue();
+        assertThat(detector.getHotKeys()).containsKey("user::1");
+    }
+
+    @Test
+    void idleKeyIsDroppedAfterTwoWindows() throws InterruptedException {
+        HotKeyDetector detector = detector();
+        for (int i = 0; i < 20; i++) {
+            detector.record("user::1", "user", "1");
+        }
+        assertThat(detector.getHotKeys()).containsKey("user::1");
+        Thread.sleep(2 * WINDOW_MILLIS + 50);
+        assertThat(detector.getHotKeys()).isEmpty();
+        assertThat(detector.record("user::1", "user", "1")).isFalse();
+    }
+
+    @Test
+    void disabledDetectorNeverReportsHotKeys() {
+        HotKeyDetector detector = new HotKeyDetector(new LockedCacheProperties());
+        for (int i = 0; i < 2000; i++) {
+            assertThat(detector.record("user::1", "user", "1")).isFalse();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.mcsirius.cloud.redis.support;
+
+import cn.hutool.core.lang.hash.MurmurHash;
+import com.mcsirius.cloud.redis.config.LockedCacheProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MappedDiskTierTest {
+
+    /**
+     * maximumEntries=4 时索引有8个槽位
+     */
+    private static final int MASK = 7;
+
+    @TempDir
+    Path root;
+
+    private MappedDiskTier diskTier;
+
+    @BeforeEach
+    void setUp() {
+        diskTier = newDiskTier();
+    }
+
+    @AfterEach
+    void tearDown() {
+        diskTier.destroy();
+    }
+
+    @Test
+    void probingWrapsAroundTheEndOfTheIndex() {
+        // 三个key都落在最后一个槽位，后两个只能绕回到索引开头
+        List<byte[]> keys = keysInSlot(MASK, 3);
+        for (byte[] key : keys) {
+            diskTier.put(key, value(key), null);
+        }
+        for (byte[] key : keys) {
+            assertThat(diskTier.get(key)).isEqualTo(value(key));
+        }
+        // 删除探测链开头的key后，后面的key仍能越过删除标记找到
+        diskTier.evict(keys.get(0));
+        assertThat(diskTier.get(keys.get(0))).isNull();
+        assertThat(diskTier.get(keys.get(1))).isEqualTo(value(keys.get(1)));
+        assertThat(diskTier.get(keys.get(2))).isEqualTo(value(keys.get(2)));
+    }
+
+    @Test
+    void deletedSlotsAreReclaimedByRehash() {
+        byte[] kept = bytes("kept");
+        diskTier.put(kept, value(kept), null);
+        for (int i = 0; i < 50; i++) {
+            byte[] key = bytes("churn-" + i);
+            diskTier.put(key, value(key), null);
+            assertThat(diskTier.get(key)).isEqualTo(value(key));
+            diskTier.evict(key);
+            assertThat(diskTier.get(key)).isNull();
+            // 删除标记和条目合计超过3/4时重建索引
+            assertThat((int) ReflectionTestUtils.getField(diskTier, "deleted")).isLessThan(MASK);
+        }
+        assertThat(diskTier.get(kept)).isEqualTo(value(kept));
+    }
+
+    @Test
+    void populateIsSkippedWhenTheKeyChangedAfterTheRead() {
+        byte[] key = bytes("user::1");
+        long sequence = diskTier.sequence(key);
+        diskTier.put(key, bytes("new"), null);
+        diskTier.populate(key, bytes("old"), null, sequence);
+        assertThat(diskTier.get(key)).isEqualTo(bytes("new"));
+
+        byte[] other = bytes("user::2");
+        diskTier.populate(other, bytes("loaded"), null, diskTier.sequence(other));
+        assertThat(diskTier.get(other)).isEqualTo(bytes("loaded"));
+    }
+
+    @Test
+    void eachInstanceUsesItsOwnDirectory() throws Exception {
+        MappedDiskTier second = newDiskTier();
+        try {
+            try (var directories = Files.list(root)) {
+                assertThat(directories.filter(Files::isDirectory).count()).isEqualTo(2);
+            }
+        } finally {
+            second.destroy();
+        }
+        try (var directories = Files.list(root)) {
+            assertThat(directories.filter(Files::isDirectory).count()).isEqualTo(1);
+        }
+    }
+
+    private MappedDiskTier newDiskTier() {
+        LockedCacheProperties properties = new LockedCacheProperties();
+        LockedCacheProperties.DiskTier diskTier = properties.getDiskTier();
+        diskTier.setEnabled(true);
+        diskTier.setDirectory(root.toString());
+        diskTier.setMinimumSize(DataSize.ofBytes(0));
+        diskTier.setSegmentSize(DataSize.ofKilobytes(64));
+        diskTier.setMaximumSize(DataSize.ofKilobytes(256));
+        diskTier.setMaximumEntries(4);
+        return new MappedDiskTier(redissonClient(), properties);
+    }
+
+    private static RedissonClient redissonClient() {
+        RTopic topic = (RTopic) Proxy.newProxyInstance(MappedDiskTierTest.class.getClassLoader(),
+                new Class<?>[]{RTopic.class}, (proxy, method, args) -> method.getReturnType() == int.class ? 0 : null);
+        return (RedissonClient) Proxy.newProxyInstance(MappedDiskTierTest.class.getClassLoader(),
+                new Class<?>[]{RedissonClient.class}, (proxy, method, args) -> topic);
+    }
+
+    private static List<byte[]> keysInSlot(int slot, int count) {
+        List<byte[]> keys = new ArrayList<>();
+        for (int i = 0; keys.size() < count; i++) {
+            byte[] key = bytes("key-" + i);
+            if ((MurmurHash.hash64(key) & MASK) == slot) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    private static byte[] value(byte[] key) {
+        return bytes("value-" + new String(key, StandardCharsets.UTF_8));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}